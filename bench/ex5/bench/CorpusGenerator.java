@@ -0,0 +1,565 @@
+package ex5.bench;
+
+import ex5.main.Sjavac;
+import ex5.parsing.SType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates s-Java programs of any size from a seed, legal or with one deliberate error, together with the
+ * verdict the validator is expected to give. The settings control the number of lines, methods, globals and
+ * parameters per method, the maximum nesting depth of if/while blocks, the share of statements that are
+ * method calls, and the share of illegal programs.
+ * Statements declare locals, some of them final and several of the same type, assign parameters, locals and
+ * globals, and read any initialized variable in scope, in values, conditions and call arguments. Each
+ * illegal program has one error of a kind listed in {@link ErrorKind}.
+ * Usage: CorpusGenerator directory [--files n] [--seed n] [setting value...] (see {@link Settings}); writes
+ * the programs and a manifest, {@value #MANIFEST}, with the expected verdict of each.
+ * @author Tomer Zilberman
+ */
+public class CorpusGenerator {
+
+    /** Name of the manifest written next to the programs. */
+    public static final String MANIFEST = "expected.txt";
+
+    /** Separator of the fields of a manifest line: file name, verdict, lines, error kind and error line. */
+    public static final String MANIFEST_SEPARATOR = "\t";
+
+    /**
+     * The errors injected into illegal programs. Every kind is rejected by the validator as well as by the
+     * language specification.
+     */
+    public enum ErrorKind {
+        /** A call to a method that is not declared. */
+        UNDEFINED_METHOD,
+        /** A call with one argument too many. */
+        ARGUMENT_COUNT,
+        /** A call with an argument of an incompatible type. */
+        ARGUMENT_TYPE,
+        /** An if or while condition that is a string. */
+        CONDITION_TYPE,
+        /** An assignment to a variable that is not declared. */
+        UNDEFINED_VARIABLE,
+        /** A final local declared without a value. */
+        FINAL_WITHOUT_VALUE,
+        /** An assignment of a value of an incompatible type to a parameter. */
+        ASSIGNMENT_TYPE,
+        /** A declaration without a semicolon. */
+        MISSING_SEMICOLON,
+        /** A closing brace with no block to close. */
+        UNMATCHED_BRACE,
+        /** A second method with the name of an existing one. */
+        DUPLICATE_METHOD
+    }
+
+    /**
+     * Settings of the generator. Every field can be set by name with {@link #set(String, String)}.
+     */
+    public static class Settings {
+        /** Approximate number of lines of a program. */
+        public int lines = 1000;
+
+        /** Number of methods of a program. */
+        public int methods = 20;
+
+        /** Maximum nesting depth of if/while blocks inside a method. */
+        public int depth = 4;
+
+        /** Number of global variables. */
+        public int globals = 10;
+
+        /** Number of parameters of every method. */
+        public int parameters = 3;
+
+        /** Share of the statements of a method body that are method calls, from 0 to 1. */
+        public double calls = 0.2;
+
+        /** Share of the programs that have an error, from 0 to 1. */
+        public double invalid = 0;
+
+        /**
+         * Sets a field by name.
+         *
+         * @param name The name of the field.
+         * @param value The value, as written on the command line.
+         * @throws IllegalArgumentException If there is no field with that name or the value is malformed.
+         */
+        public void set(String name, String value) {
+            final String UNKNOWN_SETTING = "Unknown setting: <>";
+            final String PLACEHOLDER = "<>";
+            switch (name) {
+                case "lines":
+                    lines = Integer.parseInt(value);
+                    break;
+                case "methods":
+                    methods = Integer.parseInt(value);
+                    break;
+                case "depth":
+                    depth = Integer.parseInt(value);
+                    break;
+                case "globals":
+                    globals = Integer.parseInt(value);
+                    break;
+                case "parameters":
+                    parameters = Integer.parseInt(value);
+                    break;
+                case "calls":
+                    calls = Double.parseDouble(value);
+                    break;
+                case "invalid":
+                    invalid = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(UNKNOWN_SETTING.replace(PLACEHOLDER, name));
+            }
+        }
+
+        /**
+         * @return A copy of these settings.
+         */
+        public Settings copy() {
+            Settings copy = new Settings();
+            copy.lines = lines;
+            copy.methods = methods;
+            copy.depth = depth;
+            copy.globals = globals;
+            copy.parameters = parameters;
+            copy.calls = calls;
+            copy.invalid = invalid;
+            return copy;
+        }
+    }
+
+    /**
+     * A generated program.
+     */
+    public static class Program {
+        /** The source of the program. */
+        public final String source;
+
+        /** The number of lines of the source. */
+        public final int lineCount;
+
+        /** The verdict the validator is expected to give. */
+        public final int expectedVerdict;
+
+        /** The injected error, or null if the program is legal. */
+        public final ErrorKind error;
+
+        /** The 1-based line of the injected error, or 0 if the program is legal. */
+        public final int errorLine;
+
+        /**
+         * @param lines The lines of the program.
+         * @param error The injected error, or null.
+         * @param errorLine The 1-based line of the error, or 0.
+         */
+        Program(List<String> lines, ErrorKind error, int errorLine) {
+            this.source = String.join("\n", lines) + "\n";
+            this.lineCount = lines.size();
+            this.expectedVerdict = error == null ? Sjavac.LEGAL_CODE : Sjavac.INVALID_CODE;
+            this.error = error;
+            this.errorLine = errorLine;
+        }
+    }
+
+    /**
+     * A variable of a generated program.
+     */
+    private static class Variable {
+        final String name;
+        final SType type;
+        final boolean isFinal;
+        final boolean initialized;
+
+        Variable(String name, SType type, boolean isFinal, boolean initialized) {
+            this.name = name;
+            this.type = type;
+            this.isFinal = isFinal;
+            this.initialized = initialized;
+        }
+    }
+
+    /**
+     * A method being generated: its signature, and the lines of its body where an error can be injected.
+     */
+    private static class Method {
+        final String name;
+        final SType[] types;
+        final boolean[] finals;
+        final List<Variable> parameters = new ArrayList<>();
+        final List<Integer> statements = new ArrayList<>();
+        int firstLine, lastLine;
+
+        Method(String name, SType[] types, boolean[] finals) {
+            this.name = name;
+            this.types = types;
+            this.finals = finals;
+            for (int i = 0; i < types.length; i++) {
+                parameters.add(new Variable(PARAMETER_PREFIX + i, types[i], finals[i], true));
+            }
+        }
+    }
+
+    private static final String FILES = "--files", SEED = "--seed", OPTION_PREFIX = "--";
+    private static final int DEFAULT_FILES = 100;
+    private static final long DEFAULT_SEED = 42;
+    private static final String FILE_FORMAT = "gen%06d.sjava";
+    private static final String METHOD_PREFIX = "m", PARAMETER_PREFIX = "p", LOCAL_PREFIX = "v";
+    private static final String GLOBAL_PREFIX = "g", UNDEFINED = "undefined";
+    private static final double OPEN_BLOCK = 0.3, CLOSE_BLOCK = 0.1, RETURN_IN_BLOCK = 0.1, FINAL = 0.2;
+    private static final double DECLARATION = 0.4, COMMENT = 0.1, EMPTY = 0.2, INITIALIZED = 0.7;
+    private static final double CONDITION_OR = 0.5;
+    private static final int MAX_OPERANDS = 3, MAX_NAMES = 3, MAX_INT = 1000, MAX_DOUBLE = 100, DECIMALS = 10;
+    private static final int LETTERS = 26;
+    private static final int METHOD_OVERHEAD_LINES = 3;
+    private static final SType[] TYPES = SType.values();
+    private static final SType[] CONDITION_TYPES = {SType.INT, SType.DOUBLE, SType.BOOLEAN};
+
+    private final Settings settings;
+    private SplittableRandom random;
+    private List<String> lines;
+    private List<Method> methods;
+    private List<Variable> globals;
+    // The variables of each open block of the current method, its parameters first and the innermost last
+    private List<List<Variable>> blocks;
+    private int locals;
+
+    /**
+     * @param settings The settings of the generated programs.
+     */
+    public CorpusGenerator(Settings settings) {
+        this.settings = settings.copy();
+    }
+
+    /**
+     * Generates a program. The same seed and settings always give the same program.
+     *
+     * @param seed The seed.
+     * @return The program.
+     */
+    public Program generate(long seed) {
+        random = new SplittableRandom(seed);
+        lines = new ArrayList<>();
+        methods = new ArrayList<>();
+        globals = new ArrayList<>();
+        boolean valid = random.nextDouble() >= settings.invalid;
+
+        generateGlobals();
+        int methodCount = Math.max(1, settings.methods);
+        for (int i = 0; i < methodCount; i++) {
+            SType[] types = new SType[settings.parameters];
+            boolean[] finals = new boolean[settings.parameters];
+            for (int j = 0; j < types.length; j++) {
+                types[j] = TYPES[random.nextInt(TYPES.length)];
+                finals[j] = random.nextDouble() < FINAL;
+            }
+            methods.add(new Method(METHOD_PREFIX + i, types, finals));
+        }
+        int bodyLines = Math.max(1, (settings.lines - lines.size()) / methodCount - METHOD_OVERHEAD_LINES);
+        for (Method method : methods) generateMethod(method, bodyLines);
+
+        if (valid) return new Program(lines, null, 0);
+        ErrorKind error = ErrorKind.values()[random.nextInt(ErrorKind.values().length)];
+        Method method = methods.get(random.nextInt(methods.size()));
+        return inject(error, method);
+    }
+
+    /**
+     * Declares the globals, one declaration line per type.
+     */
+    private void generateGlobals() {
+        StringBuilder[] declarations = new StringBuilder[TYPES.length];
+        for (int i = 0; i < settings.globals; i++) {
+            int type = i % TYPES.length;
+            if (declarations[type] == null) {
+                declarations[type] = new StringBuilder(TYPES[type].toString()).append(' ');
+            } else {
+                declarations[type].append(", ");
+            }
+            boolean initialized = random.nextDouble() < INITIALIZED;
+            declarations[type].append(GLOBAL_PREFIX).append(i);
+            if (initialized) declarations[type].append(" = ").append(literal(TYPES[type]));
+            globals.add(new Variable(GLOBAL_PREFIX + i, TYPES[type], false, initialized));
+        }
+        for (StringBuilder declaration : declarations) {
+            if (declaration != null) lines.add(declaration.append(';').toString());
+        }
+    }
+
+    /**
+     * Generates a method with about the given number of body lines, ending with a return statement.
+     */
+    private void generateMethod(Method method, int bodyLines) {
+        StringBuilder header = new StringBuilder("void ").append(method.name).append('(');
+        for (int i = 0; i < method.types.length; i++) {
+            if (i > 0) header.append(", ");
+            if (method.finals[i]) header.append("final ");
+            header.append(method.types[i]).append(' ').append(PARAMETER_PREFIX).append(i);
+        }
+        method.firstLine = lines.size();
+        lines.add(header.append(") {").toString());
+        locals = 0;
+        blocks = new ArrayList<>();
+        blocks.add(method.parameters);
+        blocks.add(new ArrayList<>());
+
+        for (int i = 0; i < bodyLines; i++) {
+            // The parameters and the method body are not nested blocks
+            int depth = blocks.size() - 2;
+            double choice = random.nextDouble();
+            if (depth < settings.depth && choice < OPEN_BLOCK) {
+                lines.add(condition());
+                blocks.add(new ArrayList<>());
+            } else if (depth > 0 && choice < OPEN_BLOCK + CLOSE_BLOCK) {
+                closeBlock();
+            } else {
+                addStatement(method);
+            }
+        }
+        while (blocks.size() > 2) closeBlock();
+        lines.add("return;");
+        lines.add("}");
+        method.lastLine = lines.size() - 1;
+    }
+
+    /**
+     * Closes the innermost block, sometimes returning from it first.
+     */
+    private void closeBlock() {
+        if (random.nextDouble() < RETURN_IN_BLOCK) lines.add("return;");
+        lines.add("}");
+        blocks.remove(blocks.size() - 1);
+    }
+
+    /**
+     * Adds a call, a declaration, an assignment to a variable in scope, or a comment or empty line.
+     */
+    private void addStatement(Method method) {
+        double choice = random.nextDouble();
+        if (choice < COMMENT) {
+            lines.add(random.nextDouble() < EMPTY ? "" : "// " + method.name + " line " + lines.size());
+            return;
+        }
+        method.statements.add(lines.size());
+        if (choice < COMMENT + settings.calls) {
+            lines.add(call(methods.get(random.nextInt(methods.size())), null));
+            return;
+        }
+        Variable target = variableInScope();
+        if (random.nextDouble() < DECLARATION || target == null || target.isFinal) {
+            lines.add(declaration(TYPES[random.nextInt(TYPES.length)]));
+        } else {
+            lines.add(target.name + " = " + value(target.type) + ";");
+        }
+    }
+
+    /**
+     * Declares one or more new locals of the given type in the innermost block, sometimes final.
+     *
+     * @return The legal declaration line.
+     */
+    private String declaration(SType type) {
+        boolean isFinal = random.nextDouble() < FINAL;
+        StringBuilder line = new StringBuilder(isFinal ? "final " : "").append(type).append(' ');
+        List<Variable> declared = new ArrayList<>();
+        int names = 1 + random.nextInt(MAX_NAMES);
+        for (int i = 0; i < names; i++) {
+            if (i > 0) line.append(", ");
+            String name = LOCAL_PREFIX + locals++;
+            boolean initialized = isFinal || random.nextDouble() < INITIALIZED;
+            line.append(name);
+            if (initialized) line.append(" = ").append(value(type));
+            declared.add(new Variable(name, type, isFinal, initialized));
+        }
+        // Added after the line, so no value reads a variable of its own declaration
+        blocks.get(blocks.size() - 1).addAll(declared);
+        return line.append(';').toString();
+    }
+
+    /**
+     * @return The opening line of an if or while block with a legal condition.
+     */
+    private String condition() {
+        StringBuilder line = new StringBuilder(random.nextBoolean() ? "if (" : "while (");
+        int operands = 1 + random.nextInt(MAX_OPERANDS);
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) line.append(random.nextDouble() < CONDITION_OR ? " || " : " && ");
+            line.append(value(CONDITION_TYPES[random.nextInt(CONDITION_TYPES.length)]));
+        }
+        return line.append(") {").toString();
+    }
+
+    /**
+     * @param error Null for a legal call, {@link ErrorKind#ARGUMENT_COUNT} to pass one argument too many, or
+     *              {@link ErrorKind#ARGUMENT_TYPE} to pass an incompatible first argument.
+     * @return A call of the callee.
+     */
+    private String call(Method callee, ErrorKind error) {
+        StringBuilder line = new StringBuilder(callee.name).append('(');
+        for (int i = 0; i < callee.types.length; i++) {
+            if (i > 0) line.append(", ");
+            boolean incompatible = i == 0 && error == ErrorKind.ARGUMENT_TYPE;
+            line.append(incompatible ? incompatibleLiteral(callee.types[i]) : value(callee.types[i]));
+        }
+        if (error == ErrorKind.ARGUMENT_COUNT) {
+            line.append(callee.types.length > 0 ? ", " : "").append(literal(SType.INT));
+        }
+        return line.append(");").toString();
+    }
+
+    /**
+     * @return An initialized variable in scope whose type the given type accepts, or else a literal of the type.
+     */
+    private String value(SType type) {
+        Variable variable = variableInScope();
+        if (variable != null && variable.initialized && type.accepts(variable.type) && random.nextBoolean()) {
+            return variable.name;
+        }
+        return literal(type);
+    }
+
+    /**
+     * @return A random global, parameter or local of an open block, or null if there is none.
+     */
+    private Variable variableInScope() {
+        int count = globals.size();
+        for (List<Variable> block : blocks) count += block.size();
+        if (count == 0) return null;
+        int index = random.nextInt(count);
+        if (index < globals.size()) return globals.get(index);
+        index -= globals.size();
+        for (List<Variable> block : blocks) {
+            if (index < block.size()) return block.get(index);
+            index -= block.size();
+        }
+        return null;
+    }
+
+    /**
+     * @return A random literal of the type.
+     */
+    private String literal(SType type) {
+        switch (type) {
+            case INT:
+                return String.valueOf(random.nextInt(MAX_INT));
+            case DOUBLE:
+                return random.nextInt(MAX_DOUBLE) + "." + random.nextInt(DECIMALS);
+            case BOOLEAN:
+                return String.valueOf(random.nextBoolean());
+            case STRING:
+                return "\"s" + random.nextInt(MAX_INT) + "\"";
+            default:
+                return "'" + (char) ('a' + random.nextInt(LETTERS)) + "'";
+        }
+    }
+
+    /**
+     * @return A literal of a type the given type does not accept.
+     */
+    private String incompatibleLiteral(SType type) {
+        return literal(type == SType.STRING ? SType.CHAR : SType.STRING);
+    }
+
+    /**
+     * Injects an error into a method, falling back to an undefined method call when the method has no
+     * parameter the error needs.
+     *
+     * @return The illegal program.
+     */
+    private Program inject(ErrorKind error, Method method) {
+        int index = method.statements.isEmpty() ? method.lastLine - 1 :
+                method.statements.get(random.nextInt(method.statements.size()));
+        List<String> injected = new ArrayList<>();
+        // Only the globals and the parameters are in scope at every statement of the method
+        blocks = new ArrayList<>();
+        blocks.add(method.parameters);
+        blocks.add(new ArrayList<>());
+        int parameter = method.types.length == 0 ? -1 : random.nextInt(method.types.length);
+        Method callee = methods.get(random.nextInt(methods.size()));
+        if ((error == ErrorKind.ARGUMENT_TYPE && callee.types.length == 0) ||
+                (error == ErrorKind.ASSIGNMENT_TYPE && (parameter < 0 || method.finals[parameter]))) {
+            error = ErrorKind.UNDEFINED_METHOD;
+        }
+        switch (error) {
+            case ARGUMENT_COUNT:
+            case ARGUMENT_TYPE:
+                injected.add(call(callee, error));
+                break;
+            case CONDITION_TYPE:
+                injected.add("if (" + literal(SType.STRING) + ") {");
+                injected.add("}");
+                break;
+            case UNDEFINED_VARIABLE:
+                injected.add(UNDEFINED + " = " + literal(SType.INT) + ";");
+                break;
+            case FINAL_WITHOUT_VALUE:
+                injected.add("final " + TYPES[random.nextInt(TYPES.length)] + " " + UNDEFINED + ";");
+                break;
+            case ASSIGNMENT_TYPE:
+                injected.add(PARAMETER_PREFIX + parameter + " = " + incompatibleLiteral(method.types[parameter]) + ";");
+                break;
+            case MISSING_SEMICOLON:
+                String declaration = declaration(SType.INT);
+                injected.add(declaration.substring(0, declaration.length() - 1));
+                break;
+            case UNMATCHED_BRACE:
+                injected.add("}");
+                break;
+            case DUPLICATE_METHOD:
+                // Added after the method rather than in place of a statement
+                index = method.lastLine + 1;
+                injected.add(lines.get(method.firstLine));
+                injected.add("return;");
+                injected.add("}");
+                break;
+            default:
+                injected.add(UNDEFINED + "();");
+        }
+        if (error != ErrorKind.DUPLICATE_METHOD) lines.remove(index);
+        lines.addAll(index, injected);
+        return new Program(lines, error, index + 1);
+    }
+
+    /**
+     * Writes a corpus.
+     *
+     * @param args The directory, then options and settings as "--name value" pairs.
+     * @throws IOException If the corpus cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args[0]);
+        int files = DEFAULT_FILES;
+        long seed = DEFAULT_SEED;
+        Settings settings = new Settings();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals(FILES)) {
+                files = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals(SEED)) {
+                seed = Long.parseLong(args[i + 1]);
+            } else {
+                settings.set(args[i].substring(OPTION_PREFIX.length()), args[i + 1]);
+            }
+        }
+
+        Files.createDirectories(directory);
+        CorpusGenerator generator = new CorpusGenerator(settings);
+        List<String> manifest = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            String name = String.format(FILE_FORMAT, i);
+            Program program = generator.generate(seed + i);
+            Files.writeString(directory.resolve(name), program.source, StandardCharsets.UTF_8);
+            manifest.add(String.join(MANIFEST_SEPARATOR, name, String.valueOf(program.expectedVerdict),
+                    String.valueOf(program.lineCount), String.valueOf(program.error),
+                    String.valueOf(program.errorLine)));
+        }
+        Files.write(directory.resolve(MANIFEST), manifest, StandardCharsets.UTF_8);
+    }
+}
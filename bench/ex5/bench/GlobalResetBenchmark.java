@@ -0,0 +1,89 @@
+package ex5.bench;
+
+import ex5.exceptions.ValidationException;
+import ex5.parsing.SType;
+import ex5.validation.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * Shows that ending a method costs the same however many globals there are. For each number of globals,
+ * simulates methods that assign a few globals and end, as {@link ex5.validation.ValidatorFactory} does when
+ * a method closes, and compares {@link SymbolTable} with a reset that visits every global, as the table
+ * did before. Usage: GlobalResetBenchmark [globals...] (defaults to 10 1000 100000).
+ * @author Tomer Zilberman
+ */
+public class GlobalResetBenchmark {
+    private static final int[] DEFAULT_GLOBALS = {10, 1000, 100_000};
+    private static final int METHODS = 200_000, ASSIGNED_PER_METHOD = 4;
+    private static final int WARMUP_ROUNDS = 3, MEASURED_ROUNDS = 5;
+    private static final String PREFIX = "g";
+
+    /**
+     * Runs the benchmark for every number of globals.
+     *
+     * @param args Optionally, the numbers of globals to measure.
+     * @throws ValidationException Never; every assigned global exists.
+     */
+    public static void main(String[] args) throws ValidationException {
+        int[] counts = DEFAULT_GLOBALS;
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++) counts[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%8s %16s %16s%n", "globals", "scan ns/method", "table ns/method");
+        for (int globals : counts) {
+            String[] names = new String[globals];
+            SymbolTable table = new SymbolTable();
+            for (int i = 0; i < globals; i++) {
+                names[i] = PREFIX + i;
+                table.addGlobalVariable(names[i], SType.INT, false, false);
+            }
+            boolean[] initialized = new boolean[globals];
+            boolean[] uninitializedGlobal = new boolean[globals];
+            Arrays.fill(uninitializedGlobal, true);
+
+            long scan = Long.MAX_VALUE, flat = Long.MAX_VALUE;
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                runScan(initialized, uninitializedGlobal);
+                long scanned = System.nanoTime() - start;
+                start = System.nanoTime();
+                runTable(table, names);
+                long stamped = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    scan = Math.min(scan, scanned);
+                    flat = Math.min(flat, stamped);
+                }
+            }
+            System.out.printf("%8d %16.1f %16.1f%n", globals, (double) scan / METHODS, (double) flat / METHODS);
+        }
+    }
+
+    /**
+     * Simulates the methods with a reset that rewrites the state of every global.
+     */
+    private static void runScan(boolean[] initialized, boolean[] uninitializedGlobal) {
+        int globals = initialized.length;
+        for (int method = 0; method < METHODS; method++) {
+            for (int i = 0; i < ASSIGNED_PER_METHOD; i++) initialized[(method + i) % globals] = true;
+            for (int i = 0; i < globals; i++) initialized[i] = !uninitializedGlobal[i];
+        }
+    }
+
+    /**
+     * Simulates the methods with the symbol table.
+     */
+    private static void runTable(SymbolTable table, String[] names) throws ValidationException {
+        int globals = names.length;
+        for (int method = 0; method < METHODS; method++) {
+            table.enterScope();
+            for (int i = 0; i < ASSIGNED_PER_METHOD; i++) table.initializeVariable(0, names[(method + i) % globals]);
+            table.exitScope();
+            table.resetGlobalsToGlobalInitializationState();
+        }
+        if (table.isVariableInitialized(0, names[0])) {
+            throw new IllegalStateException("A reset global is still initialized");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ex5.bench;
+
+import ex5.main.IncrementalSession;
+import ex5.main.Sjavac;
+import ex5.parsing.FileProcessor;
+
+import java.util.Random;
+
+/**
+ * Measures how long an {@link IncrementalSession} takes to re-check a source after an edit inside a method
+ * body, compared with validating the whole source again. The source is generated with the given number of
+ * methods. Usage: IncrementalBenchmark [methods] (defaults to 5000).
+ * @author Tomer Zilberman
+ */
+public class IncrementalBenchmark {
+    private static final int DEFAULT_METHODS = 5000;
+    private static final int WARMUP_EDITS = 20_000, MEASURED_EDITS = 20_000, FULL_RUNS = 20;
+    private static final int LINES_PER_METHOD = 7, FIRST_BODY_LINE = 2, BODY_LINES = 4;
+    private static final long SEED = 42;
+    private static final double NANOS_PER_MICRO = 1e3, NANOS_PER_MILLI = 1e6;
+    private static final String[] EDITS = {"a = 3;", "b = 4.5;", "helper(a, b);", "a = 7;", "// edited"};
+
+    /**
+     * Generates a source, then times full validations and edits.
+     *
+     * @param args Optionally, the number of methods to generate.
+     */
+    public static void main(String[] args) {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_METHODS;
+        String source = generate(methods);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FULL_RUNS; i++) {
+            if (new Sjavac(FileProcessor.ofText(source)).validate() != Sjavac.LEGAL_CODE) {
+                throw new IllegalStateException("The generated source is not legal");
+            }
+        }
+        double fullMillis = (System.nanoTime() - start) / NANOS_PER_MILLI / FULL_RUNS;
+
+        IncrementalSession session = new IncrementalSession(source);
+        Random random = new Random(SEED);
+        edit(session, random, methods, WARMUP_EDITS);
+        long runs = session.getFullRuns();
+        start = System.nanoTime();
+        edit(session, random, methods, MEASURED_EDITS);
+        double editMicros = (System.nanoTime() - start) / NANOS_PER_MICRO / MEASURED_EDITS;
+        if (session.getFullRuns() != runs) {
+            throw new IllegalStateException("Body edits caused full runs");
+        }
+
+        System.out.printf("methods:    %d (%d lines)%n", methods, session.getLineCount());
+        System.out.printf("full run:   %.3f ms%n", fullMillis);
+        System.out.printf("body edit:  %.3f us%n", editMicros);
+        System.out.printf("speedup:    %.0fx%n", fullMillis * NANOS_PER_MILLI / NANOS_PER_MICRO / editMicros);
+    }
+
+    /**
+     * Replaces random body lines of random methods.
+     */
+    private static void edit(IncrementalSession session, Random random, int methods, int edits) {
+        long sink = 0;
+        for (int i = 0; i < edits; i++) {
+            int line = 1 + random.nextInt(methods) * LINES_PER_METHOD + FIRST_BODY_LINE +
+                    random.nextInt(BODY_LINES);
+            sink += session.applyEdit(line, line, EDITS[random.nextInt(EDITS.length)]);
+        }
+        if (sink == Long.MIN_VALUE) System.out.println(sink);
+    }
+
+    /**
+     * Generates a legal source of {@link #LINES_PER_METHOD}-line methods, after one global line.
+     */
+    private static String generate(int methods) {
+        StringBuilder source = new StringBuilder("boolean flag = true;\n");
+        for (int i = 0; i < methods; i++) {
+            source.append(i == 0 ? "void helper" : "void method" + i).append("(int a, double b) {\n")
+                    .append("a = 1;\n")
+                    .append("b = 2.5;\n")
+                    .append("helper(a, b);\n")
+                    .append("// comment\n")
+                    .append("return;\n")
+                    .append("}\n");
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package ex5.bench;
+
+import ex5.parsing.LineClassifier;
+import ex5.parsing.LineKind;
+import ex5.parsing.RegexUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the throughput of the regex chain that used to sort lines into buckets with the
+ * single-pass {@link LineClassifier}. Usage: LineClassifierBenchmark [file or directory...]
+ * (defaults to the "tests" directory).
+ * @author Tomer Zilberman
+ */
+public class LineClassifierBenchmark {
+    private static final String DEFAULT_SOURCES = "tests";
+    private static final int WARMUP_ROUNDS = 5, MEASURED_ROUNDS = 10;
+    private static final long MIN_LINES_PER_ROUND = 200_000;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Classifies a line the way ValidatorFactory did before the classifier existed. Uses the compiled
+     * patterns directly, since {@link RegexUtils#matches(String, String)} now runs the classifier for them.
+     *
+     * @param line Trimmed line.
+     * @return The bucket of the line.
+     */
+    private static LineKind classifyWithRegex(String line) {
+        if (regexMatches(line, RegexUtils.RETURN_STATEMENT)) return LineKind.RETURN;
+        if (regexMatches(line, RegexUtils.CLOSING_SCOPE)) return LineKind.CLOSING_SCOPE;
+        if (regexMatches(line, RegexUtils.VARIABLE_DECLARATION)) return LineKind.VARIABLE_DECLARATION;
+        if (regexMatches(line, RegexUtils.METHOD_DECLARATION_ONLY)) return LineKind.METHOD_DECLARATION;
+        if (regexMatches(line, RegexUtils.IF_WHILE_BLOCK)) return LineKind.IF_WHILE_BLOCK;
+        if (regexMatches(line, RegexUtils.VARIABLE_VALUE_CHANGE)) return LineKind.VARIABLE_VALUE_CHANGE;
+        if (regexMatches(line, RegexUtils.METHOD_CALL_ONLY)) return LineKind.METHOD_CALL;
+        return LineKind.INVALID;
+    }
+
+    private static boolean regexMatches(String line, String regex) {
+        return RegexUtils.compilePattern(regex).matcher(line).matches();
+    }
+
+    /**
+     * Runs both classifiers over the lines and prints lines/sec for each.
+     *
+     * @param args Files or directories with s-Java sources.
+     * @throws IOException If a source cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String[] sources = args.length == 0 ? new String[]{DEFAULT_SOURCES} : args;
+        for (String source : sources) collectLines(new File(source), lines);
+        if (lines.isEmpty()) {
+            System.err.println("No lines to classify.");
+            return;
+        }
+        for (String line : lines) {
+            if (LineClassifier.classify(line) != classifyWithRegex(line)) {
+                throw new IllegalStateException("Classifiers disagree on: " + line);
+            }
+        }
+
+        int repetitions = (int) Math.max(1, MIN_LINES_PER_ROUND / lines.size());
+        double regexRate = measure(lines, repetitions, true);
+        double classifierRate = measure(lines, repetitions, false);
+        System.out.printf("lines:      %d distinct, %d per round%n", lines.size(),
+                (long) lines.size() * repetitions);
+        System.out.printf("regex:      %,.0f lines/sec%n", regexRate);
+        System.out.printf("classifier: %,.0f lines/sec%n", classifierRate);
+        System.out.printf("speedup:    %.1fx%n", classifierRate / regexRate);
+    }
+
+    /**
+     * Measures the best throughput over several rounds, after warming up.
+     *
+     * @return Lines classified per second.
+     */
+    private static double measure(List<String> lines, int repetitions, boolean useRegex) {
+        double best = 0;
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < repetitions; r++) {
+                for (String line : lines) {
+                    LineKind kind = useRegex ? classifyWithRegex(line) : LineClassifier.classify(line);
+                    sink += kind.ordinal();
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.max(best, (double) lines.size() * repetitions * NANOS_PER_SECOND / elapsed);
+            }
+        }
+        if (sink == Long.MIN_VALUE) System.out.println(sink);
+        return best;
+    }
+
+    /**
+     * Adds the trimmed code lines (no comments or empty lines) of a file or a directory tree.
+     */
+    private static void collectLines(File source, List<String> lines) throws IOException {
+        if (source.isDirectory()) {
+            File[] children = source.listFiles();
+            if (children == null) return;
+            for (File child : children) collectLines(child, lines);
+            return;
+        }
+        for (String line : Files.readAllLines(source.toPath())) {
+            line = line.trim();
+            if (!RegexUtils.isCommentOrEmpty(line)) lines.add(line);
+        }
+    }
+}
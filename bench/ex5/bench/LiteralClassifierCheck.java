@@ -0,0 +1,119 @@
+package ex5.bench;
+
+import ex5.main.Sjavac;
+import ex5.parsing.LiteralClassifier;
+import ex5.parsing.RegexUtils;
+import ex5.parsing.SType;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that {@link LiteralClassifier} agrees with the literal regexes of {@link RegexUtils}, run with
+ * {@link Pattern} directly: for every input, the bit of each type must be set exactly when the regex of that
+ * type matches. The inputs are every string up to a given length over an alphabet of the characters that
+ * matter to the regexes, and random longer strings over the same alphabet.
+ * Usage: LiteralClassifierCheck [--length n] [--random n] [--seed n]
+ * (defaults to length 5 and 1000000 random strings). Exits with status 1 if an input is misclassified.
+ * @author Tomer Zilberman
+ */
+public class LiteralClassifierCheck {
+    private static final String LENGTH = "--length", RANDOM = "--random", SEED = "--seed";
+    private static final int DEFAULT_LENGTH = 5, DEFAULT_RANDOM = 1_000_000, MAX_RANDOM_LENGTH = 24,
+            MAX_REPORTED = 20;
+    private static final long DEFAULT_SEED = 42;
+
+    /** Digits, signs, dots, quotes, the letters of true and false, spaces, and each line terminator. */
+    private static final char[] ALPHABET = {'0', '7', '-', '+', '.', '"', '\'', 't', 'r', 'u', 'e', 'f', 'a',
+            'l', 's', 'x', ' ', '\t', '\n', '\r', '\u0085', '\u2028', '\u2029', '\u00e9'};
+
+    /** The regex of each type, indexed by the id of the type. */
+    private static final Pattern[] PATTERNS = new Pattern[SType.values().length];
+
+    static {
+        PATTERNS[SType.INT.getId()] = Pattern.compile(RegexUtils.INTEGER_ONLY);
+        PATTERNS[SType.DOUBLE.getId()] = Pattern.compile(RegexUtils.DOUBLE_ONLY);
+        PATTERNS[SType.BOOLEAN.getId()] = Pattern.compile(RegexUtils.BOOLEAN_ONLY);
+        PATTERNS[SType.STRING.getId()] = Pattern.compile(RegexUtils.STRING_ONLY);
+        PATTERNS[SType.CHAR.getId()] = Pattern.compile(RegexUtils.CHAR_ONLY);
+    }
+
+    private static long checked, mismatches;
+
+    /**
+     * Checks every input.
+     *
+     * @param args See the class documentation.
+     */
+    public static void main(String[] args) {
+        int length = DEFAULT_LENGTH, random = DEFAULT_RANDOM;
+        long seed = DEFAULT_SEED;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(LENGTH)) {
+                length = Integer.parseInt(args[++i]);
+            } else if (args[i].equals(RANDOM)) {
+                random = Integer.parseInt(args[++i]);
+            } else if (args[i].equals(SEED)) {
+                seed = Long.parseLong(args[++i]);
+            }
+        }
+
+        char[] text = new char[Math.max(length, MAX_RANDOM_LENGTH)];
+        for (int size = 0; size <= length; size++) {
+            enumerate(text, 0, size);
+        }
+        Random generator = new Random(seed);
+        for (int i = 0; i < random; i++) {
+            int size = generator.nextInt(MAX_RANDOM_LENGTH + 1);
+            for (int j = 0; j < size; j++) text[j] = ALPHABET[generator.nextInt(ALPHABET.length)];
+            check(new String(text, 0, size));
+        }
+        System.out.printf("%d inputs checked, %d mismatches%n", checked, mismatches);
+        if (mismatches > 0) System.exit(Sjavac.INVALID_CODE);
+    }
+
+    /**
+     * Checks every string of the given size whose first characters are already in the buffer.
+     */
+    private static void enumerate(char[] text, int position, int size) {
+        if (position == size) {
+            check(new String(text, 0, size));
+            return;
+        }
+        for (char c : ALPHABET) {
+            text[position] = c;
+            enumerate(text, position + 1, size);
+        }
+    }
+
+    /**
+     * Compares the mask of an input with the regexes, also inside a longer line.
+     */
+    private static void check(String input) {
+        checked++;
+        int expected = LiteralClassifier.NONE;
+        for (SType type : SType.values()) {
+            if (PATTERNS[type.getId()].matcher(input).matches()) expected |= 1 << type.getId();
+        }
+        String line = "x = " + input + ";";
+        int actual = LiteralClassifier.classify(input);
+        int inLine = LiteralClassifier.classify(line, line.length() - input.length() - 1, line.length() - 1);
+        if (actual != expected || inLine != expected) {
+            if (++mismatches <= MAX_REPORTED) {
+                System.out.printf("\"%s\": expected %s, got %s%n", escape(input), Integer.toBinaryString(expected),
+                        Integer.toBinaryString(actual));
+            }
+        }
+    }
+
+    /**
+     * @return The input with characters outside printable ASCII written as unicode escapes.
+     */
+    private static String escape(String input) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : input.toCharArray()) {
+            escaped.append(c >= ' ' && c < '\u007f' ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package ex5.bench;
+
+import ex5.main.Sjavac;
+import ex5.parsing.FileProcessor;
+import ex5.parsing.RegexUtils;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checks that matching and validation stay linear in the line length on lines built to make a backtracking
+ * regex engine go super-linear: long declarations of string literals, long runs of digits and underscores,
+ * and unbalanced brackets. Each line is matched against every pattern of {@link RegexUtils}, then validated
+ * inside a method by {@link Sjavac}, and the whole run must finish within a fixed time budget.
+ * Usage: LongLineStress [length] [budget ms] (defaults to 200000 characters and 5000 ms).
+ * Exits with status 1 if the budget is exceeded.
+ * @author Tomer Zilberman
+ */
+public class LongLineStress {
+    private static final int DEFAULT_LENGTH = 200_000;
+    private static final long DEFAULT_BUDGET_MILLIS = 5_000;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final String[] PATTERNS = {
+            RegexUtils.EMPTY_LINE, RegexUtils.SINGLE_LINE_COMMENT, RegexUtils.RETURN_STATEMENT,
+            RegexUtils.CLOSING_SCOPE, RegexUtils.VARIABLE_DECLARATION, RegexUtils.METHOD_DECLARATION_ONLY,
+            RegexUtils.IF_WHILE_BLOCK, RegexUtils.VARIABLE_VALUE_CHANGE, RegexUtils.METHOD_CALL_ONLY,
+            RegexUtils.ILLEGAL_VARIABLE_NAME, RegexUtils.ILLEGAL_METHOD_NAME, RegexUtils.INTEGER_ONLY,
+            RegexUtils.DOUBLE_ONLY, RegexUtils.BOOLEAN_ONLY, RegexUtils.STRING_ONLY, RegexUtils.CHAR_ONLY};
+
+    /**
+     * Runs every case and checks the budget.
+     *
+     * @param args Optionally, the minimum line length and the budget in milliseconds.
+     */
+    public static void main(String[] args) {
+        int length = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LENGTH;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_BUDGET_MILLIS;
+
+        Map<String, String> cases = new LinkedHashMap<>();
+        cases.put("strings, no semicolon", "String " + items("s%d = \"a\", ", length) + "s = \"a\"");
+        cases.put("strings", "String " + items("t%d = \"a,b\", ", length) + "t = \"\";");
+        cases.put("numbers, bad end", "double " + items("d%d = 12.5, ", length) + "d = 1..;");
+        cases.put("digits", "double d = " + "1".repeat(length) + "x;");
+        cases.put("assignment", "a = \"" + "\",\"".repeat(length / 3) + "\" ,");
+        cases.put("call, no semicolon", "foo(" + ")".repeat(length) + " ");
+        cases.put("call, spaces", "foo(" + ") ".repeat(length / 2) + "x;");
+        cases.put("condition", "if (" + "a && ".repeat(length / 5) + "true) {");
+        cases.put("underscores", "int a" + "_".repeat(length) + "bc;");
+
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        long total = 0;
+        try {
+            System.out.printf("%-24s %10s %8s %12s %12s%n", "case", "length", "matches", "match ms", "validate ms");
+            for (Map.Entry<String, String> entry : cases.entrySet()) {
+                String line = entry.getValue();
+                long start = System.nanoTime();
+                int matched = 0;
+                for (String pattern : PATTERNS) {
+                    if (RegexUtils.matches(line, pattern)) matched++;
+                }
+                long matching = System.nanoTime() - start;
+                start = System.nanoTime();
+                new Sjavac(FileProcessor.ofText("void foo(boolean a) {\n" + line + "\nreturn;\n}\n")).validate();
+                long validation = System.nanoTime() - start;
+                total += matching + validation;
+                System.out.printf("%-24s %10d %8d %12.1f %12.1f%n", entry.getKey(), line.length(), matched,
+                        matching / NANOS_PER_MILLI, validation / NANOS_PER_MILLI);
+            }
+        } finally {
+            System.setErr(err);
+        }
+        System.out.printf("total: %.1f ms, budget %d ms%n", total / NANOS_PER_MILLI, budget);
+        if (total / NANOS_PER_MILLI > budget) System.exit(Sjavac.INVALID_CODE);
+    }
+
+    /**
+     * Repeats an item, numbered from 0 by its %d, until the text is at least the given length.
+     */
+    private static String items(String format, int length) {
+        StringBuilder text = new StringBuilder(length + format.length());
+        for (int i = 0; text.length() < length; i++) text.append(String.format(format, i));
+        return text.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package ex5.bench;
+
+import ex5.exceptions.ValidationException;
+import ex5.main.Sjavac;
+import ex5.parsing.FileProcessor;
+import ex5.parsing.SType;
+import ex5.validation.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Shows how the cost of symbol lookups and of entering and leaving scopes grows with the nesting depth.
+ * For each depth, compares the flat {@link SymbolTable} with the list of per-scope maps it replaced, on
+ * lookups of a parameter from the innermost block, and then times the validation of a generated source
+ * with blocks nested that deep. Usage: NestingBenchmark [depth...] (defaults to 1 4 16 64 256).
+ * @author Tomer Zilberman
+ */
+public class NestingBenchmark {
+    private static final int[] DEFAULT_DEPTHS = {1, 4, 16, 64, 256};
+    private static final int LOOKUPS_PER_SCOPE = 8, OPERATIONS = 2_000_000;
+    private static final int WARMUP_ROUNDS = 3, MEASURED_ROUNDS = 5, STATEMENTS = 32, METHODS = 200;
+    private static final String PARAMETER = "a", LOCAL = "v", TYPE = "int";
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * The symbol table design before the flat table: a list of maps searched from the innermost scope out,
+     * with a new map allocated for every scope.
+     */
+    private static class ScopeList {
+        private final ArrayList<HashMap<String, String>> scopes = new ArrayList<>();
+
+        ScopeList() {
+            scopes.add(new HashMap<>());
+        }
+
+        void enterScope() {
+            scopes.add(new HashMap<>());
+        }
+
+        void exitScope() {
+            scopes.get(scopes.size() - 1).clear();
+            scopes.remove(scopes.size() - 1);
+        }
+
+        void declare(String name, String type) {
+            scopes.get(scopes.size() - 1).put(name, type);
+        }
+
+        int findVariableScope(String name) {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                if (scopes.get(i).containsKey(name)) return i;
+            }
+            return -1;
+        }
+
+        String getVariableType(int scope, String name) {
+            return scopes.get(scope).get(name);
+        }
+    }
+
+    /**
+     * Runs the benchmark for every depth.
+     *
+     * @param args Optionally, the depths to measure.
+     */
+    public static void main(String[] args) {
+        int[] depths = DEFAULT_DEPTHS;
+        if (args.length > 0) {
+            depths = new int[args.length];
+            for (int i = 0; i < args.length; i++) depths[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%6s %14s %14s %14s%n", "depth", "maps ns/op", "flat ns/op", "validate ms");
+        for (int depth : depths) {
+            double mapsNanos = best(() -> runScopeList(depth)) / OPERATIONS;
+            double flatNanos = best(() -> runSymbolTable(depth)) / OPERATIONS;
+            String source = generate(depth);
+            double validateMillis = best(() -> {
+                if (new Sjavac(FileProcessor.ofText(source)).validate() != Sjavac.LEGAL_CODE) {
+                    throw new IllegalStateException("The generated source is not legal");
+                }
+            }) / NANOS_PER_MILLI;
+            System.out.printf("%6d %14.1f %14.1f %14.3f%n", depth, mapsNanos, flatNanos, validateMillis);
+        }
+    }
+
+    /**
+     * Nests scopes to the given depth with the old design, declaring a local in each and looking up the
+     * parameter of the outermost scope, then leaves them; repeated until OPERATIONS lookups are done.
+     */
+    private static void runScopeList(int depth) {
+        long sink = 0;
+        for (int done = 0; done < OPERATIONS; ) {
+            ScopeList table = new ScopeList();
+            table.enterScope();
+            table.declare(PARAMETER, TYPE);
+            for (int level = 0; level < depth && done < OPERATIONS; level++) {
+                table.enterScope();
+                table.declare(LOCAL, TYPE);
+                for (int i = 0; i < LOOKUPS_PER_SCOPE; i++, done++) {
+                    sink += table.getVariableType(table.findVariableScope(PARAMETER), PARAMETER).length();
+                }
+            }
+            while (table.scopes.size() > 1) table.exitScope();
+        }
+        if (sink == Long.MIN_VALUE) System.out.println(sink);
+    }
+
+    /**
+     * Does the same as {@link #runScopeList(int)} with {@link SymbolTable}.
+     */
+    private static void runSymbolTable(int depth) {
+        long sink = 0;
+        SymbolTable table = new SymbolTable();
+        try {
+            for (int done = 0; done < OPERATIONS; ) {
+                table.enterScope();
+                table.addLocalVariable(PARAMETER, SType.INT, true, false);
+                for (int level = 0; level < depth && done < OPERATIONS; level++) {
+                    table.enterScope();
+                    table.addLocalVariable(LOCAL, SType.INT, true, false);
+                    for (int i = 0; i < LOOKUPS_PER_SCOPE; i++, done++) {
+                        sink += table.getVariableType(table.findVariableScope(PARAMETER), PARAMETER).ordinal();
+                    }
+                }
+                while (table.getScope() > 0) table.exitScope();
+            }
+        } catch (ValidationException e) {
+            throw new IllegalStateException(e);
+        }
+        if (sink == Long.MIN_VALUE) System.out.println(sink);
+    }
+
+    /**
+     * Generates a legal source whose methods nest if blocks to the given depth and assign a parameter
+     * in the innermost block.
+     */
+    private static String generate(int depth) {
+        StringBuilder source = new StringBuilder();
+        for (int m = 0; m < METHODS; m++) {
+            source.append("void method").append(m).append("(int a, boolean c) {\n");
+            for (int level = 0; level < depth; level++) source.append("if (c) {\n");
+            for (int i = 0; i < STATEMENTS; i++) source.append("a = a;\n");
+            for (int level = 0; level < depth; level++) source.append("}\n");
+            source.append("return;\n}\n");
+        }
+        return source.toString();
+    }
+
+    /**
+     * Runs a task several times after warming up.
+     *
+     * @return The best time, in nanoseconds.
+     */
+    private static double best(Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            task.run();
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) best = Math.min(best, elapsed);
+        }
+        return best;
+    }
+}
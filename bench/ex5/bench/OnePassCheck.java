@@ -0,0 +1,145 @@
+package ex5.bench;
+
+import ex5.main.Sjavac;
+import ex5.parsing.FileProcessor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Checks that {@link Sjavac#validateInOnePass()} gives the verdict of {@link Sjavac#validate()} on every given
+ * source and on mutants of it: copies with a line removed, duplicated, or swapped with the next one, and with
+ * the first method moved to the end of the file, so calls come before declarations and globals after methods.
+ * Sources on which validate() throws are skipped. Usage: OnePassCheck (file|dir)... [--mutants n] [--seed n]
+ * (defaults to 200 mutants per source). Exits with status 1 if a verdict differs.
+ * @author Tomer Zilberman
+ */
+public class OnePassCheck {
+    private static final String MUTANTS = "--mutants", SEED = "--seed", METHOD_START = "void ", LINES = "\\R",
+            OPEN = "{", CLOSE = "}";
+    private static final int DEFAULT_MUTANTS = 200, KINDS = 4, REMOVE = 0, DUPLICATE = 1, SWAP = 2;
+    private static final long DEFAULT_SEED = 42;
+    private static final String CRASH = "crash";
+
+    private static int checked, skipped, mismatches;
+
+    /**
+     * Checks every source and its mutants.
+     *
+     * @param args See the class documentation.
+     * @throws IOException If a source cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        int mutants = DEFAULT_MUTANTS;
+        long seed = DEFAULT_SEED;
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(MUTANTS)) {
+                mutants = Integer.parseInt(args[++i]);
+            } else if (args[i].equals(SEED)) {
+                seed = Long.parseLong(args[++i]);
+            } else if (Files.isDirectory(Paths.get(args[i]))) {
+                try (Stream<Path> files = Files.list(Paths.get(args[i]))) {
+                    files.filter(Files::isRegularFile).sorted().forEach(sources::add);
+                }
+            } else {
+                sources.add(Paths.get(args[i]));
+            }
+        }
+
+        Random random = new Random(seed);
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (Path path : sources) {
+                String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+                check(path.toString(), source);
+                List<String> lines = Arrays.asList(source.split(LINES, -1));
+                for (int i = 0; i < mutants && !lines.isEmpty(); i++) {
+                    int kind = random.nextInt(KINDS);
+                    check(path + " mutant " + i + " (kind " + kind + ")", mutate(lines, kind, random));
+                }
+            }
+        } finally {
+            System.setErr(err);
+        }
+        System.out.printf("%d sources checked, %d skipped, %d mismatches%n", checked, skipped, mismatches);
+        if (mismatches > 0) System.exit(Sjavac.INVALID_CODE);
+    }
+
+    /**
+     * Compares the verdicts of both modes on a source.
+     */
+    private static void check(String name, String source) {
+        String expected = verdict(source, false);
+        if (expected.equals(CRASH)) {
+            skipped++;
+            return;
+        }
+        checked++;
+        String actual = verdict(source, true);
+        if (!expected.equals(actual)) {
+            mismatches++;
+            System.out.println(name + ": validate " + expected + ", one pass " + actual);
+        }
+    }
+
+    /**
+     * @return The verdict of a mode on a source, or {@link #CRASH} if it throws.
+     */
+    private static String verdict(String source, boolean onePass) {
+        try {
+            Sjavac compiler = new Sjavac(FileProcessor.ofText(source));
+            return String.valueOf(onePass ? compiler.validateInOnePass() : compiler.validate());
+        } catch (RuntimeException e) {
+            return CRASH;
+        }
+    }
+
+    /**
+     * Makes a mutant of a source.
+     */
+    private static String mutate(List<String> lines, int kind, Random random) {
+        List<String> mutant = new ArrayList<>(lines);
+        int line = random.nextInt(mutant.size());
+        if (kind == REMOVE) {
+            mutant.remove(line);
+        } else if (kind == DUPLICATE) {
+            mutant.add(line, mutant.get(line));
+        } else if (kind == SWAP) {
+            if (line + 1 < mutant.size()) mutant.add(line + 1, mutant.remove(line));
+        } else {
+            moveFirstMethod(mutant);
+        }
+        return String.join("\n", mutant);
+    }
+
+    /**
+     * Moves the lines from the first method declaration to its closing brace, found by counting braces,
+     * to the end of the source.
+     */
+    private static void moveFirstMethod(List<String> lines) {
+        int start = 0;
+        while (start < lines.size() && !lines.get(start).trim().startsWith(METHOD_START)) start++;
+        int depth = 0, end = start;
+        for (; end < lines.size(); end++) {
+            String line = lines.get(end).trim();
+            if (line.endsWith(OPEN)) depth++;
+            if (line.equals(CLOSE) && --depth == 0) break;
+        }
+        if (end >= lines.size()) return;
+        List<String> method = new ArrayList<>(lines.subList(start, end + 1));
+        lines.subList(start, end + 1).clear();
+        lines.addAll(method);
+    }
+}
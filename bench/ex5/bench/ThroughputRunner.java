@@ -0,0 +1,168 @@
+package ex5.bench;
+
+import ex5.main.Sjavac;
+import ex5.parsing.FileProcessor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs programs through {@link Sjavac} end to end and records, for each, the lines validated per second,
+ * the peak heap usage, and whether the verdict is the expected one. Either runs a corpus written by
+ * {@link CorpusGenerator}, or generates one program per value of a setting to draw a scaling curve.
+ * Usage: ThroughputRunner directory [--repeat n] [--one-pass]
+ *    or: ThroughputRunner [--repeat n] [--one-pass] [--seed n] [--setting value...], where one setting may have
+ *        comma-separated values, e.g. --lines 1000,10000,100000
+ * With --one-pass, programs are validated by {@link Sjavac#validateInOnePass()} instead of {@link Sjavac#validate()}.
+ * Exits with status 1 if a verdict differs from the expected one.
+ * @author Tomer Zilberman
+ */
+public class ThroughputRunner {
+    private static final String REPEAT = "--repeat", SEED = "--seed", OPTION_PREFIX = "--", VALUES = ",";
+    private static final int DEFAULT_REPEAT = 3, FILE_FIELD = 0, VERDICT_FIELD = 1, LINES_FIELD = 2;
+    private static final long DEFAULT_SEED = 42;
+    private static final double NANOS_PER_SECOND = 1e9, NANOS_PER_MILLI = 1e6, BYTES_PER_MEGABYTE = 1 << 20;
+    private static final String HEADER = "%-24s %10s %8s %12s %14s %10s%n";
+    private static final String ROW = "%-24s %10d %8s %12.3f %14.0f %10.1f%n";
+
+    private static int repeat = DEFAULT_REPEAT;
+    private static boolean mismatch, onePass;
+    private static long totalLines, totalNanos;
+
+    /**
+     * Runs a corpus or a scaling curve.
+     *
+     * @param args See the class documentation.
+     * @throws IOException If the corpus cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = null;
+        long seed = DEFAULT_SEED;
+        CorpusGenerator.Settings settings = new CorpusGenerator.Settings();
+        String sweptName = null;
+        String[] sweptValues = null;
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith(OPTION_PREFIX)) {
+                directory = Paths.get(args[i]);
+            } else if (args[i].equals(REPEAT)) {
+                repeat = Integer.parseInt(args[++i]);
+            } else if (args[i].equals(Sjavac.ONE_PASS_FLAG)) {
+                onePass = true;
+            } else if (args[i].equals(SEED)) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                String name = args[i].substring(OPTION_PREFIX.length()), value = args[++i];
+                if (value.contains(VALUES)) {
+                    sweptName = name;
+                    sweptValues = value.split(VALUES);
+                } else {
+                    settings.set(name, value);
+                }
+            }
+        }
+
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            if (directory != null) {
+                runCorpus(directory);
+            } else {
+                runCurve(settings, seed, sweptName, sweptValues);
+            }
+        } finally {
+            System.setErr(err);
+        }
+        System.out.printf("total: %d lines at %.0f lines/s%n", totalLines,
+                totalLines * NANOS_PER_SECOND / Math.max(1, totalNanos));
+        if (mismatch) System.exit(Sjavac.INVALID_CODE);
+    }
+
+    /**
+     * Runs every file listed in the manifest of a corpus.
+     */
+    private static void runCorpus(Path directory) throws IOException {
+        System.out.printf(HEADER, "file", "lines", "verdict", "best ms", "lines/s", "peak MB");
+        for (String line : Files.readAllLines(directory.resolve(CorpusGenerator.MANIFEST), StandardCharsets.UTF_8)) {
+            String[] fields = line.split(CorpusGenerator.MANIFEST_SEPARATOR);
+            String file = directory.resolve(fields[FILE_FIELD]).toString();
+            run(fields[FILE_FIELD], Integer.parseInt(fields[LINES_FIELD]), Integer.parseInt(fields[VERDICT_FIELD]),
+                    () -> validate(new Sjavac(file)));
+        }
+    }
+
+    /**
+     * Generates and runs one program per value of the swept setting, or a single program if none is swept.
+     */
+    private static void runCurve(CorpusGenerator.Settings settings, long seed, String sweptName,
+                                 String[] sweptValues) {
+        if (sweptName == null) {
+            sweptName = "program";
+            sweptValues = new String[]{String.valueOf(seed)};
+        }
+        System.out.printf(HEADER, sweptName, "lines", "verdict", "best ms", "lines/s", "peak MB");
+        for (String value : sweptValues) {
+            CorpusGenerator.Settings point = settings.copy();
+            if (!sweptName.equals("program")) point.set(sweptName, value);
+            CorpusGenerator.Program program = new CorpusGenerator(point).generate(seed);
+            run(value, program.lineCount, program.expectedVerdict,
+                    () -> validate(new Sjavac(FileProcessor.ofText(program.source))));
+        }
+    }
+
+    /**
+     * @return The verdict of the compiler, in the mode chosen on the command line.
+     */
+    private static int validate(Sjavac compiler) {
+        return onePass ? compiler.validateInOnePass() : compiler.validate();
+    }
+
+    /**
+     * Validates a program once to warm up, then the given number of times, and prints a row.
+     */
+    private static void run(String name, int lines, int expected, IntSupplier validation) {
+        int verdict = validation.getAsInt();
+        System.gc();
+        resetPeakHeap();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < repeat; i++) {
+            long start = System.nanoTime();
+            verdict = validation.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        boolean matches = verdict == expected;
+        mismatch |= !matches;
+        totalLines += lines;
+        totalNanos += best;
+        System.out.printf(ROW, name, lines, verdict + (matches ? "" : "!=" + expected), best / NANOS_PER_MILLI,
+                lines * NANOS_PER_SECOND / best, peakHeap() / BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Resets the peak usage of every heap pool.
+     */
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * @return The sum of the peak usages of the heap pools since the last reset, in bytes.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,224 @@
+package ex5.bench;
+
+import ex5.exceptions.ValidationException;
+import ex5.main.Sjavac;
+import ex5.parsing.RegexUtils;
+import ex5.parsing.SType;
+import ex5.validation.ConditionValidator;
+import ex5.validation.MethodValidator;
+import ex5.validation.SymbolTable;
+import ex5.validation.VariableValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH microbenchmarks of the hot paths of the validator: the line helpers of {@link RegexUtils}, the
+ * validate method of each validator on typical lines, symbol lookups at several nesting depths, and
+ * end-to-end validation of every file in a test directory. Run with the gc profiler, each benchmark reports
+ * its throughput and the bytes it allocates per operation (gc.alloc.rate.norm); see pom.xml for how.
+ * @author Tomer Zilberman
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class HotPathBenchmarks {
+    private static final String PARAMETER = "a", LOCAL = "v", SOURCE_SUFFIX = ".sjava";
+    private static final int LONG_CONDITION_OPERANDS = 200;
+    private static final String LONG_CONDITION =
+            "if (" + "c && a || 2.5 || ".repeat(LONG_CONDITION_OPERANDS / 4) + "true) {";
+
+    /**
+     * Lines and literals of every outcome, cycled through so no branch is always taken.
+     */
+    @State(Scope.Thread)
+    public static class Lines {
+        private static final String[] COMMENT_OR_EMPTY_LINES = {"", "   ", "// a comment", "int a = 5;"};
+        private static final String[] LITERALS = {"42", "-3.5", "true", "\"text\"", "'c'", "name"};
+
+        private int next;
+
+        String nextLine() {
+            return COMMENT_OR_EMPTY_LINES[next++ % COMMENT_OR_EMPTY_LINES.length];
+        }
+
+        String nextLiteral() {
+            return LITERALS[next++ % LITERALS.length];
+        }
+    }
+
+    /**
+     * A method body in the middle of being checked: the methods foo(int, double) and bar(int, double,
+     * boolean, String, final char) are declared, and the parameters a, b and c are in scope. Lines that
+     * declare or open a scope are validated in a scope that is left afterwards, so every operation starts
+     * from the same table.
+     */
+    @State(Scope.Thread)
+    public static class MethodBody {
+        SymbolTable table;
+        VariableValidator variables;
+        ConditionValidator conditions;
+        MethodValidator methods;
+
+        @Setup
+        public void setUp() throws ValidationException {
+            table = new SymbolTable();
+            methods = new MethodValidator(table);
+            methods.validateMethodDeclarationForSweep("void foo(int x, double y) {");
+            table.exitScope();
+            methods.validateMethodDeclarationForSweep("void bar(int x, double y, boolean z, String s, final char c) {");
+            table.exitScope();
+            table.enterScope();
+            table.addLocalVariable(PARAMETER, SType.INT, false, true);
+            table.addLocalVariable("b", SType.DOUBLE, false, true);
+            table.addLocalVariable("c", SType.BOOLEAN, false, true);
+            variables = new VariableValidator(table);
+            conditions = new ConditionValidator(table);
+        }
+    }
+
+    /**
+     * A parameter looked up from the innermost of several nested blocks, each declaring a local.
+     */
+    @State(Scope.Thread)
+    public static class NestedBlocks {
+        @Param({"1", "4", "16", "64"})
+        public int depth;
+
+        SymbolTable table;
+
+        @Setup
+        public void setUp() {
+            table = new SymbolTable();
+            table.enterScope();
+            table.addLocalVariable(PARAMETER, SType.INT, false, true);
+            for (int level = 0; level < depth; level++) {
+                table.enterScope();
+                table.addLocalVariable(LOCAL, SType.INT, false, true);
+            }
+        }
+    }
+
+    /**
+     * The sources of a test directory. Messages the validator prints for illegal files are discarded while
+     * the benchmark runs.
+     */
+    @State(Scope.Thread)
+    public static class Sources {
+        @Param("tests")
+        public String directory;
+
+        File[] files;
+        private PrintStream err;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            files = new File(directory).listFiles((dir, name) -> name.endsWith(SOURCE_SUFFIX));
+            if (files == null) throw new IllegalStateException("No such directory: " + directory);
+            Arrays.sort(files);
+            err = System.err;
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.setErr(err);
+        }
+    }
+
+    @Benchmark
+    public boolean regexUtilsIsCommentOrEmpty(Lines lines) {
+        return RegexUtils.isCommentOrEmpty(lines.nextLine());
+    }
+
+    @Benchmark
+    public SType regexUtilsGetLiteralType(Lines lines) {
+        return RegexUtils.getLiteralType(lines.nextLiteral());
+    }
+
+    @Benchmark
+    public int variableValidatorDeclaration(MethodBody body) throws ValidationException {
+        body.table.enterScope();
+        body.variables.validate("int d = 5;");
+        body.table.exitScope();
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public int variableValidatorAssignment(MethodBody body) throws ValidationException {
+        body.variables.validate("b = a;");
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public int conditionValidator(MethodBody body) throws ValidationException {
+        body.conditions.validate("if (c && a || 2.5 || true) {");
+        body.table.exitScope();
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public int conditionValidatorLongCondition(MethodBody body) throws ValidationException {
+        body.conditions.validate(LONG_CONDITION);
+        body.table.exitScope();
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public int methodValidatorCall(MethodBody body) throws ValidationException {
+        body.methods.validate("foo(a, 2.5);");
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public int methodValidatorCallFiveArguments(MethodBody body) throws ValidationException {
+        body.methods.validate("bar(a, b, c, \"text\", 'x');");
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public int methodValidatorReturn(MethodBody body) throws ValidationException {
+        body.methods.validate("return;");
+        return body.table.getScope();
+    }
+
+    @Benchmark
+    public SType symbolTableLookup(NestedBlocks blocks) {
+        int scope = blocks.table.findVariableScope(PARAMETER);
+        return blocks.table.getVariableType(scope, PARAMETER);
+    }
+
+    /**
+     * Validates every source of the directory, from reading the file to the verdict.
+     */
+    @Benchmark
+    public int sjavacTests(Sources sources) {
+        int verdicts = 0;
+        for (File file : sources.files) {
+            try {
+                verdicts += new Sjavac(file.getPath()).validate();
+            } catch (RuntimeException e) {
+                verdicts += Sjavac.IO_ERROR;
+            }
+        }
+        return verdicts;
+    }
+}
@@ -0,0 +1,97 @@
+package ex5.exceptions;
+
+/**
+ * The kinds of errors the validator reports, each with a stable id that tools can match on. Ids are never
+ * reused or renumbered: new kinds get new ids, and the order of the constants carries no meaning.
+ * @author Tomer Zilberman
+ */
+public enum ErrorCode {
+    /** A line that is not allowed in the global scope. */
+    INVALID_GLOBAL_LINE("E101"),
+
+    /** A method declared inside another method, or after a method that does not end with a return. */
+    NESTED_METHOD("E102"),
+
+    /** A closing brace with no open block, or a block that is never closed. */
+    UNMATCHED_BRACES("E103"),
+
+    /** A line in the variable bucket that is not a valid declaration or assignment. */
+    INVALID_VARIABLE_LINE("E104"),
+
+    /** An assignment without a value. */
+    INVALID_ASSIGNMENT("E105"),
+
+    /** A line in the method bucket that is not a valid declaration, call or return. */
+    INVALID_METHOD_LINE("E106"),
+
+    /** A variable name that is a single underscore or contains "__". */
+    ILLEGAL_VARIABLE_NAME("E201"),
+
+    /** A variable declared twice in the same scope. */
+    VARIABLE_ALREADY_DECLARED("E202"),
+
+    /** A variable declared with a type that does not exist. */
+    INVALID_VARIABLE_TYPE("E203"),
+
+    /** A variable that is not declared in the current or an outer scope. */
+    UNDEFINED_VARIABLE("E204"),
+
+    /** A variable read before it is assigned a value. */
+    UNINITIALIZED_VARIABLE("E205"),
+
+    /** A final variable declared without a value. */
+    FINAL_WITHOUT_VALUE("E206"),
+
+    /** An assignment to a final variable. */
+    FINAL_ASSIGNMENT("E207"),
+
+    /** A value whose type cannot be assigned to the variable. */
+    TYPE_MISMATCH("E208"),
+
+    /** A method name that starts with an underscore or contains "__". */
+    ILLEGAL_METHOD_NAME("E301"),
+
+    /** A method declared twice. */
+    METHOD_ALREADY_DECLARED("E302"),
+
+    /** A call to a method that is not declared. */
+    UNDEFINED_METHOD("E303"),
+
+    /** A call with the wrong number of arguments. */
+    ARGUMENT_COUNT("E304"),
+
+    /** A call with an argument whose type the parameter does not accept. */
+    ARGUMENT_TYPE("E305"),
+
+    /** A call argument that is neither a variable nor a literal. */
+    UNKNOWN_ARGUMENT("E306"),
+
+    /** A parameter that is not a type and a name, optionally preceded by final. */
+    INVALID_PARAMETER("E307"),
+
+    /** A parameter declared with a type that does not exist. */
+    INVALID_PARAMETER_TYPE("E308"),
+
+    /** Two parameters of a method with the same name. */
+    DUPLICATE_PARAMETER("E309"),
+
+    /** An if or while condition with an operand that is not a boolean, int or double. */
+    CONDITION_TYPE("E401");
+
+    /** The stable id of the error. */
+    private final String id;
+
+    /**
+     * @param id The stable id of the error.
+     */
+    ErrorCode(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return The stable id of the error, e.g. "E204".
+     */
+    public String getId() {
+        return id;
+    }
+}
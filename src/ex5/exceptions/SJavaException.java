@@ -4,4 +4,8 @@ public class SJavaException extends Exception {
     public SJavaException(String s) {
         super(s);
     }
+
+    protected SJavaException(String s, boolean writableStackTrace) {
+        super(s, null, false, writableStackTrace);
+    }
 }
@@ -1,7 +1,74 @@
 package ex5.exceptions;
 
+/**
+ * An error in the validated source. Validation errors are expected outcomes rather than bugs, and a run
+ * that collects every error can throw many of them, so the exception records no stack trace, and its message
+ * is only built from the template and arguments when it is first asked for. In a template, "&lt;&gt;" stands
+ * for the next argument and "&lt;n&gt;" for the n-th (from 1).
+ * @author Tomer Zilberman
+ */
 public class ValidationException extends SJavaException {
-    public ValidationException(String s) {
-        super(s);
+    private static final char PLACEHOLDER_START = '<', PLACEHOLDER_END = '>';
+
+    private final ErrorCode code;
+    private final String template;
+    private final Object[] arguments;
+    private String message; // Built on first use
+
+    /**
+     * @param code The kind of the error.
+     * @param template The message, with a placeholder for each argument.
+     * @param arguments The values of the placeholders, turned into strings only if the message is built.
+     */
+    public ValidationException(ErrorCode code, String template, Object... arguments) {
+        super(null, false);
+        this.code = code;
+        this.template = template;
+        this.arguments = arguments;
+    }
+
+    /**
+     * @return The kind of the error.
+     */
+    public ErrorCode getCode() {
+        return code;
+    }
+
+    /**
+     * @return The message of the error, built from the template on first use.
+     */
+    @Override
+    public String getMessage() {
+        if (message == null) message = format(template, arguments);
+        return message;
+    }
+
+    /**
+     * Fills the placeholders of a template. Arguments are inserted as they are, without looking for
+     * placeholders in them.
+     */
+    private static String format(String template, Object[] arguments) {
+        StringBuilder text = new StringBuilder(template.length());
+        int next = 0;
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == PLACEHOLDER_START && i + 1 < template.length()) {
+                char inner = template.charAt(i + 1);
+                if (inner == PLACEHOLDER_END && next < arguments.length) {
+                    text.append(arguments[next++]);
+                    i++;
+                    continue;
+                }
+                int index = inner - '1';
+                if (index >= 0 && index < arguments.length && i + 2 < template.length()
+                        && template.charAt(i + 2) == PLACEHOLDER_END) {
+                    text.append(arguments[index]);
+                    i += 2;
+                    continue;
+                }
+            }
+            text.append(c);
+        }
+        return text.toString();
     }
 }
@@ -0,0 +1,246 @@
+package ex5.main;
+
+import ex5.exceptions.FileException;
+import ex5.parsing.FileProcessor;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Validates many s-Java files in one JVM. Each file gets its own {@link Sjavac} (and so its own symbol table)
+ * and runs as a task on a work-stealing {@link ForkJoinPool}. Results are printed one per line, as
+ * "path code", sorted by path; totals (files/sec, lines/sec) are printed to stderr so stdout stays stable.
+ * <p>
+ * Usage: Sjavac --batch [--threads N] (file | directory | glob)...
+ * Directories are searched recursively for .sjava files. Globs such as "tests/**.sjava" are matched
+ * relative to the current directory. A file the validator crashes on has no verdict, like a file that cannot
+ * be read, so it is reported as IO_ERROR; the crash is logged to stderr and counted in the totals.
+ * Unchanged files are skipped when the {@link ResultCache} is enabled.
+ * @author Tomer Zilberman
+ */
+public class BatchRunner {
+    /** The flag that selects batch mode in {@link Sjavac#main(String[])}. */
+    public static final String BATCH_FLAG = "--batch";
+
+    private static final String THREADS_FLAG = "--threads";
+    private static final String SOURCE_SUFFIX = ".sjava";
+    private static final String GLOB_PREFIX = "glob:";
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final String INTERNAL_ERROR = "Internal error while validating ";
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The verdict for one file.
+     */
+    public static class FileResult {
+        /** The path of the file, as given or found. */
+        public final String path;
+
+        /** LEGAL_CODE, INVALID_CODE or IO_ERROR, as defined in {@link Sjavac}. */
+        public final int code;
+
+        /** Number of lines in the file. */
+        public final int lines;
+
+        /** Whether the validator crashed on the file, which is then reported as IO_ERROR. */
+        public final boolean crashed;
+
+        /**
+         * @param path The path of the file.
+         * @param code The verdict.
+         * @param lines Number of lines in the file.
+         */
+        public FileResult(String path, int code, int lines) {
+            this(path, code, lines, false);
+        }
+
+        /**
+         * @param path The path of the file.
+         * @param code The verdict.
+         * @param lines Number of lines in the file.
+         * @param crashed Whether the validator crashed on the file.
+         */
+        public FileResult(String path, int code, int lines, boolean crashed) {
+            this.path = path;
+            this.code = code;
+            this.lines = lines;
+            this.crashed = crashed;
+        }
+    }
+
+    private BatchRunner() {
+    }
+
+    /**
+     * Validates a single file.
+     *
+     * @param path The file to validate.
+     * @return The verdict for the file; IO_ERROR if it cannot be opened or the validator crashes on it.
+     */
+    public static FileResult validateFile(String path) {
+        return validateFile(path, null);
+    }
+
+    /**
+     * Validates a single file, skipping it if its content has a result in the cache.
+     *
+     * @param path The file to validate.
+     * @param cache The result cache, or null to always validate.
+     * @return The verdict for the file; IO_ERROR if it cannot be opened or the validator crashes on it.
+     */
+    public static FileResult validateFile(String path, ResultCache cache) {
+        try {
+            if (cache != null) {
+                ResultCache.Entry entry = cache.validate(path, false);
+                return new FileResult(path, entry.verdict(), entry.lines);
+            }
+            Sjavac compiler = new Sjavac(FileProcessor.open(path));
+            int code = compiler.validate();
+            return new FileResult(path, code, compiler.getSourceLineCount());
+        } catch (FileException | IOException e) {
+            return new FileResult(path, Sjavac.IO_ERROR, 0);
+        } catch (RuntimeException e) {
+            // A crash on one file must not abort the whole batch
+            System.err.println(INTERNAL_ERROR + path + ": " + e);
+            return new FileResult(path, Sjavac.IO_ERROR, 0, true);
+        }
+    }
+
+    /**
+     * Validates files in parallel.
+     *
+     * @param paths The files to validate.
+     * @param pool The pool to run on.
+     * @param cache The result cache, or null to validate every file.
+     * @return The results, in the order of the given paths.
+     */
+    public static List<FileResult> validateAll(List<String> paths, ForkJoinPool pool, ResultCache cache) {
+        List<ForkJoinTask<FileResult>> tasks = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            tasks.add(pool.submit(() -> validateFile(path, cache)));
+        }
+        List<FileResult> results = new ArrayList<>(paths.size());
+        for (ForkJoinTask<FileResult> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Expands files, directories and globs into a sorted list of files without duplicates.
+     *
+     * @param arguments The files, directories and globs.
+     * @return The files to validate.
+     * @throws IOException If a directory cannot be read.
+     */
+    public static List<String> expand(List<String> arguments) throws IOException {
+        TreeSet<String> files = new TreeSet<>();
+        for (String argument : arguments) {
+            Path path = Paths.get(argument);
+            if (isGlob(argument)) {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher(GLOB_PREFIX + argument);
+                try (Stream<Path> walk = Files.walk(globBase(argument))) {
+                    walk.filter(Files::isRegularFile).filter(matcher::matches)
+                            .forEach(file -> files.add(file.toString()));
+                }
+            } else if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> file.toString().endsWith(SOURCE_SUFFIX))
+                            .forEach(file -> files.add(file.toString()));
+                }
+            } else {
+                files.add(argument);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static boolean isGlob(String argument) {
+        for (int i = 0; i < argument.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(argument.charAt(i)) >= 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The directory part of a glob before its first wildcard, where the search starts.
+     */
+    private static Path globBase(String glob) {
+        int wildcard = 0;
+        while (GLOB_CHARACTERS.indexOf(glob.charAt(wildcard)) < 0) wildcard++;
+        int separator = glob.lastIndexOf('/', wildcard);
+        return Paths.get(separator < 0 ? "" : glob.substring(0, separator + 1));
+    }
+
+    /**
+     * Reads the number of threads given on the command line.
+     *
+     * @param value The value of {@value #THREADS_FLAG}.
+     * @return The number of threads, or 0 if the value is not a number.
+     */
+    static int parseThreads(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Runs batch mode.
+     *
+     * @param args {@value #BATCH_FLAG}, optionally {@value #THREADS_FLAG} N, then files, directories and globs.
+     * @throws IOException If a directory cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        final String USAGE = "Usage: Sjavac " + BATCH_FLAG + " [" + THREADS_FLAG + " N] (file|dir|glob)...";
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(BATCH_FLAG)) continue;
+            if (args[i].equals(THREADS_FLAG) && i + 1 < args.length) {
+                threads = parseThreads(args[++i]);
+            } else {
+                arguments.add(args[i]);
+            }
+        }
+        if (arguments.isEmpty() || threads < 1) {
+            System.err.println(USAGE);
+            return;
+        }
+
+        List<String> files = expand(arguments);
+        ResultCache cache = ResultCache.fromSystemProperties();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<FileResult> results;
+        try {
+            results = validateAll(files, pool, cache);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+
+        long lines = 0;
+        int crashed = 0;
+        for (FileResult result : results) {
+            System.out.println(result.path + " " + result.code);
+            lines += result.lines;
+            if (result.crashed) crashed++;
+        }
+        System.err.printf("%d files (%d crashed), %d lines in %.3f s (%d threads): %.0f files/sec, %.0f lines/sec%n",
+                results.size(), crashed, lines, seconds, threads, results.size() / seconds, lines / seconds);
+        if (cache != null) cache.close();
+    }
+}
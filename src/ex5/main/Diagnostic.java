@@ -0,0 +1,37 @@
+package ex5.main;
+
+import ex5.exceptions.ErrorCode;
+
+/**
+ * An error found in a source, with the line it was found on. See {@link Sjavac#collectDiagnostics()}.
+ * @author Tomer Zilberman
+ */
+public class Diagnostic {
+    /** The (1-based) line number of the error in the source. */
+    public final int line;
+
+    /** The kind of the error. */
+    public final ErrorCode code;
+
+    /** The message of the error. */
+    public final String message;
+
+    /**
+     * @param line The line number of the error.
+     * @param code The kind of the error.
+     * @param message The message of the error.
+     */
+    public Diagnostic(int line, ErrorCode code, String message) {
+        this.line = line;
+        this.code = code;
+        this.message = message;
+    }
+
+    /**
+     * @return The diagnostic as "line: id message", e.g. "12: E204 Variable 'a' does not exist ...".
+     */
+    @Override
+    public String toString() {
+        return line + ": " + code.getId() + " " + message;
+    }
+}
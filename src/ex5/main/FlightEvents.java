@@ -0,0 +1,228 @@
+package ex5.main;
+
+import ex5.parsing.LineKind;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the validator, so a regular recording (e.g. jcmd PID JFR.start) shows which
+ * inputs are slow without a custom profiler: one event per file with the duration and verdict of each pass,
+ * one per method body checked in the second pass, and one per line whose classification and validation take
+ * longer than {@value #SLOW_LINE_PROPERTY} nanoseconds (1 ms by default). Events are only built when
+ * a recording has them enabled, apart from the one file event per run; outside a recording, timing a line
+ * costs a comparison.
+ * @author Tomer Zilberman
+ */
+final class FlightEvents {
+
+    /** System property holding the time in nanoseconds from which a line is reported as slow. */
+    static final String SLOW_LINE_PROPERTY = "sjavac.slowLineNanos";
+
+    private static final String CATEGORY = "s-Java";
+    private static final long DEFAULT_SLOW_LINE_NANOS = 1_000_000;
+    private static final int NOT_RUN = -1;
+    private static final int VOID_LENGTH = 4;
+    private static final char START_BRACKET = '(';
+
+    /** Time from which a line is reported as slow, in nanoseconds. */
+    private static final long slowLineNanos = Long.getLong(SLOW_LINE_PROPERTY, DEFAULT_SLOW_LINE_NANOS);
+
+    /**
+     * The validation of one file, from the start of its first pass to the end of its last.
+     */
+    @Name("ex5.File")
+    @Label("s-Java File")
+    @Category(CATEGORY)
+    @Description("Validation of one s-Java source, with the duration and verdict of each pass")
+    static final class FileEvent extends Event {
+        @Label("Source")
+        @Description("The file name, or null for sources that are not files")
+        String source;
+
+        @Label("Lines")
+        int lines;
+
+        @Label("Sweep Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long sweepDuration;
+
+        @Label("Sweep Verdict")
+        @Description("0 legal, 1 invalid, -1 not run")
+        int sweepVerdict = NOT_RUN;
+
+        @Label("Compile Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long compileDuration;
+
+        @Label("Compile Verdict")
+        @Description("0 legal, 1 invalid, -1 not run")
+        int compileVerdict = NOT_RUN;
+
+        @Label("Error")
+        String error;
+
+        /**
+         * Records the end of the first pass.
+         *
+         * @param start The time the pass started, from {@link Metrics#now()}.
+         * @param verdict The result of the pass.
+         */
+        void sweepDone(long start, int verdict) {
+            sweepDuration = System.nanoTime() - start;
+            sweepVerdict = verdict;
+        }
+
+        /**
+         * Records the end of the second pass.
+         *
+         * @param start The time the pass started, from {@link Metrics#now()}.
+         * @param verdict The result of the pass.
+         */
+        void compileDone(long start, int verdict) {
+            compileDuration = System.nanoTime() - start;
+            compileVerdict = verdict;
+        }
+
+        /**
+         * Ends the event and commits it if a recording wants it.
+         *
+         * @param lines Number of lines in the source.
+         * @param error The message of the error found, or null.
+         */
+        void finish(int lines, String error) {
+            end();
+            if (shouldCommit()) {
+                this.lines = lines;
+                this.error = error;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * The second pass over one method body.
+     */
+    @Name("ex5.Method")
+    @Label("s-Java Method")
+    @Category(CATEGORY)
+    @Description("Second pass over one method body")
+    static final class MethodEvent extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("First Line")
+        int firstLine;
+
+        @Label("Last Line")
+        @Description("The line of the closing brace, or of the first error")
+        int lastLine;
+
+        @Label("Valid")
+        boolean valid;
+
+        @Label("Error")
+        String error;
+    }
+
+    /**
+     * A line whose classification and validation took longer than {@value #SLOW_LINE_PROPERTY}.
+     */
+    @Name("ex5.SlowLine")
+    @Label("s-Java Slow Line")
+    @Category(CATEGORY)
+    @Description("A line that took longer than the sjavac.slowLineNanos system property to check")
+    static final class SlowLineEvent extends Event {
+        @Label("Pass")
+        String pass;
+
+        @Label("Line Number")
+        int lineNumber;
+
+        @Label("Line Kind")
+        String kind;
+
+        @Label("Line Length")
+        int length;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Starts the event of a file.
+     *
+     * @param source The file name, or null.
+     * @return The started event.
+     */
+    static FileEvent beginFile(String source) {
+        FileEvent event = new FileEvent();
+        event.source = source;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Starts the event of a method body, if a recording has method events enabled.
+     *
+     * @param declaration The declaration line of the method.
+     * @param lineNumber The line number of the declaration.
+     * @return The started event, or null.
+     */
+    static MethodEvent beginMethod(String declaration, int lineNumber) {
+        MethodEvent event = new MethodEvent();
+        if (!event.isEnabled()) return null;
+        int bracket = declaration.indexOf(START_BRACKET);
+        event.method = bracket > VOID_LENGTH ? declaration.substring(VOID_LENGTH, bracket).trim() : declaration;
+        event.firstLine = lineNumber;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of a method body and commits it if a recording wants it.
+     *
+     * @param event The event from {@link #beginMethod}, or null.
+     * @param lineNumber The line number of the closing brace or of the error.
+     * @param error The message of the error found in the method, or null.
+     */
+    static void endMethod(MethodEvent event, int lineNumber, String error) {
+        if (event == null) return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.lastLine = lineNumber;
+            event.valid = error == null;
+            event.error = error;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reports a line as slow if checking it took longer than {@value #SLOW_LINE_PROPERTY}.
+     *
+     * @param phase The pass.
+     * @param kind The kind of the line.
+     * @param lineNumber The line number.
+     * @param line The line.
+     * @param start The time checking the line started, from {@link Metrics#now()}.
+     */
+    static void checkLine(Metrics.Phase phase, LineKind kind, int lineNumber, CharSequence line, long start) {
+        long time = System.nanoTime() - start;
+        if (time < slowLineNanos) return;
+        SlowLineEvent event = new SlowLineEvent();
+        if (!event.shouldCommit()) return;
+        event.pass = phase.toString();
+        event.lineNumber = lineNumber;
+        event.kind = kind.toString();
+        event.length = line.length();
+        event.time = time;
+        event.commit();
+    }
+}
@@ -0,0 +1,326 @@
+package ex5.main;
+
+import ex5.parsing.FileProcessor;
+import ex5.parsing.LineClassifier;
+import ex5.parsing.LineKind;
+import ex5.parsing.LineTable;
+import ex5.validation.SymbolTable;
+import ex5.validation.ValidatorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An editing session over one source that keeps its verdict up to date as the source is edited, re-checking
+ * only what an edit can affect. Method bodies depend only on the global scope and on the method signatures,
+ * and {@link ValidatorFactory} resets the globals when a method ends with a return statement, so every such
+ * method starts from the same state: an edit inside a method body re-checks that method alone.
+ * Edits of global lines, of method declarations or of the brace structure re-run both passes over the whole
+ * source, while edits that only touch comments and empty lines outside methods re-check nothing.
+ * <p>
+ * The verdict is always the one {@link Sjavac#validate()} returns for the current source. Sources that fail
+ * the first pass, or have a method that does not end with a return statement, are validated as a whole on
+ * every edit, since there one method can change the state the next one starts from.
+ * @author Tomer Zilberman
+ */
+public class IncrementalSession {
+    private static final String LINE_SEPARATOR = "\n";
+
+    /**
+     * A method of the source, with its code lines and the result of its last check.
+     */
+    private static class Method {
+        /** The (1-based) source line of the declaration. */
+        int first;
+
+        /** Number of source lines from the declaration to the closing brace, inclusive. */
+        int length;
+
+        /** The code lines of the method, numbered relative to the declaration (which is line 0). */
+        LineTable table;
+
+        /** The first error of the method, or null if it is valid. */
+        MethodBodies.BodyError error;
+
+        /**
+         * @return The (1-based) source line of the closing brace.
+         */
+        int last() {
+            return first + length - 1;
+        }
+    }
+
+    private final ArrayList<String> lines;
+    private final ArrayList<Method> methods = new ArrayList<>();
+    private SymbolTable symbolTable;
+    private boolean incremental;
+    private MethodBodies.BodyError globalError;
+    private int globalErrorLine;
+    private int verdict;
+    private String errorMessage;
+    private long fullRuns;
+    private long methodChecks;
+
+    /**
+     * Starts a session and validates the whole source.
+     *
+     * @param source The source text.
+     */
+    public IncrementalSession(CharSequence source) {
+        lines = splitLines(source);
+        fullRun();
+    }
+
+    /**
+     * Replaces a range of source lines and updates the verdict.
+     *
+     * @param firstLine The first (1-based) line to replace.
+     * @param lastLine The last line to replace, inclusive; firstLine - 1 inserts before firstLine.
+     * @param replacement The new text of the range; an empty text deletes the range.
+     * @return The verdict for the edited source, as {@link Sjavac#validate()} returns it.
+     * @throws IllegalArgumentException If the range is not within the source.
+     * @throws RuntimeException If validating the source fails the way {@link Sjavac#validate()} does.
+     */
+    public int applyEdit(int firstLine, int lastLine, CharSequence replacement) {
+        final String INVALID_RANGE = "Invalid line range <1>-<2> in a source of <3> lines";
+        if (firstLine < 1 || lastLine < firstLine - 1 || lastLine > lines.size()) {
+            throw new IllegalArgumentException(INVALID_RANGE.replace("<1>", String.valueOf(firstLine))
+                    .replace("<2>", String.valueOf(lastLine)).replace("<3>", String.valueOf(lines.size())));
+        }
+        List<String> removed = lines.subList(firstLine - 1, lastLine);
+        boolean onlyComments = onlyCommentsOrEmpty(removed);
+        ArrayList<String> added = splitLines(replacement);
+        onlyComments &= onlyCommentsOrEmpty(added);
+        int delta = added.size() - removed.size();
+        removed.clear();
+        lines.addAll(firstLine - 1, added);
+
+        if (!incremental) {
+            fullRun();
+            return verdict;
+        }
+        int index = methodAt(firstLine);
+        Method method = index < 0 ? null : methods.get(index);
+        if (method != null && method.first < firstLine && lastLine < method.last()) {
+            // Inside a method body: re-check the method if it is still a single method
+            LineTable table = readLines(method.first, method.last() + delta);
+            List<int[]> bounds = MethodBodies.find(table);
+            if (bounds == null || bounds.size() != 1 || bounds.get(0)[1] != table.size() - 1) {
+                fullRun();
+                return verdict;
+            }
+            method.length += delta;
+            method.table = table;
+            check(method);
+            shift(index + 1, method.first, delta);
+        } else if (onlyComments) {
+            // Comments or empty lines outside methods: only the positions of later lines change
+            shift(methodAt(lastLine) + 1, lastLine, delta);
+        } else {
+            fullRun();
+            return verdict;
+        }
+        updateVerdict();
+        return verdict;
+    }
+
+    /**
+     * @return The verdict for the current source, as {@link Sjavac#validate()} returns it.
+     */
+    public int getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * @return The message of the first error in the current source, or null if it is legal.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return The current source text, with lines separated by '\n'.
+     */
+    public String getSource() {
+        return String.join(LINE_SEPARATOR, lines);
+    }
+
+    /**
+     * @return The number of lines in the current source.
+     */
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * @return Whether edits inside method bodies are currently re-checked one method at a time.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return Number of times the whole source was validated.
+     */
+    public long getFullRuns() {
+        return fullRuns;
+    }
+
+    /**
+     * @return Number of methods checked, both during full runs and after edits.
+     */
+    public long getMethodChecks() {
+        return methodChecks;
+    }
+
+    /**
+     * Validates the whole source and splits it into methods for later edits.
+     */
+    private void fullRun() {
+        fullRuns++;
+        methods.clear();
+        globalError = null;
+        incremental = false;
+
+        Sjavac compiler = new Sjavac(FileProcessor.ofText(getSource()));
+        verdict = compiler.initialSweep();
+        if (verdict != Sjavac.LEGAL_CODE) {
+            errorMessage = compiler.getErrorMessage();
+            return;
+        }
+        LineTable table = compiler.getLineTable();
+        List<int[]> bounds = MethodBodies.find(table);
+        if (bounds == null) {
+            verdict = compiler.compile();
+            errorMessage = compiler.getErrorMessage();
+            return;
+        }
+
+        symbolTable = compiler.getSymbolTable();
+        int next = 0;
+        for (int i = 0; i < table.size(); i++) {
+            if (next < bounds.size() && bounds.get(next)[0] == i) {
+                int end = bounds.get(next++)[1];
+                Method method = new Method();
+                method.first = table.getLineNumber(i);
+                method.length = table.getLineNumber(end) - method.first + 1;
+                method.table = new LineTable();
+                for (int j = i; j <= end; j++) {
+                    method.table.add(table.getLine(j), table.getKind(j), table.getLineNumber(j) - method.first);
+                }
+                check(method);
+                methods.add(method);
+                i = end;
+            } else if (globalError == null) {
+                globalError = MethodBodies.check(table, i, i, symbolTable);
+                if (globalError != null) globalErrorLine = table.getLineNumber(i);
+            }
+        }
+        incremental = true;
+        updateVerdict();
+    }
+
+    /**
+     * Checks the body of a method from the state every method starts from, and restores that state.
+     *
+     * @param method The method to check.
+     */
+    private void check(Method method) {
+        methodChecks++;
+        method.error = MethodBodies.check(method.table, 0, method.table.size() - 1, symbolTable);
+    }
+
+    /**
+     * Sets the verdict from the first error in line order, as a sequential second pass would find it.
+     *
+     * @throws RuntimeException If the validators failed with an exception on the first error.
+     */
+    private void updateVerdict() {
+        verdict = Sjavac.LEGAL_CODE;
+        errorMessage = null;
+        MethodBodies.BodyError first = globalError;
+        for (Method method : methods) {
+            if (globalError != null && globalErrorLine < method.first) break;
+            if (method.error != null) {
+                first = method.error;
+                break;
+            }
+        }
+        if (first == null) return;
+        if (first.failure != null) throw first.failure;
+        verdict = Sjavac.INVALID_CODE;
+        errorMessage = first.message;
+    }
+
+    /**
+     * Moves the methods from a given index, and the global error if it comes after a given line.
+     *
+     * @param fromIndex Index of the first method to move.
+     * @param afterLine Source line after which the global error moves.
+     * @param delta Number of lines to move by.
+     */
+    private void shift(int fromIndex, int afterLine, int delta) {
+        if (delta == 0) return;
+        for (int i = fromIndex; i < methods.size(); i++) methods.get(i).first += delta;
+        if (globalError != null && globalErrorLine > afterLine) globalErrorLine += delta;
+    }
+
+    /**
+     * Finds the last method that starts at or before a line.
+     *
+     * @param line A (1-based) source line.
+     * @return The index of the method, or -1 if all methods start after the line.
+     */
+    private int methodAt(int line) {
+        int low = 0, high = methods.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (methods.get(middle).first <= line) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Reads the code lines of a range of the source, numbered relative to its first line.
+     *
+     * @param first The first (1-based) source line.
+     * @param last The last source line, inclusive.
+     * @return The code lines of the range.
+     */
+    private LineTable readLines(int first, int last) {
+        LineTable table = new LineTable();
+        for (int number = first; number <= last; number++) {
+            CharSequence line = FileProcessor.trim(lines.get(number - 1));
+            LineKind kind = LineClassifier.classify(line);
+            if (kind != LineKind.COMMENT && kind != LineKind.EMPTY) {
+                table.add(line.toString(), kind, number - first);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Checks whether lines are all comments or empty.
+     */
+    private static boolean onlyCommentsOrEmpty(List<String> lines) {
+        for (String line : lines) {
+            if (!LineClassifier.isCommentOrEmpty(FileProcessor.trim(line))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits text into lines on the line terminators a Scanner recognizes.
+     */
+    private static ArrayList<String> splitLines(CharSequence text) {
+        ArrayList<String> result = new ArrayList<>();
+        FileProcessor processor = FileProcessor.ofText(text);
+        CharSequence line;
+        while ((line = processor.readLine()) != null) result.add(line.toString());
+        return result;
+    }
+}
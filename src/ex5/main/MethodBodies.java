@@ -0,0 +1,116 @@
+package ex5.main;
+
+import ex5.exceptions.ValidationException;
+import ex5.parsing.LineKind;
+import ex5.parsing.LineTable;
+import ex5.validation.SymbolTable;
+import ex5.validation.Validator;
+import ex5.validation.ValidatorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the code lines of a source into method bodies, and runs the second pass over one body at a time.
+ * After a successful first pass, every method that ends with a return statement starts from the same
+ * state, since {@link ValidatorFactory} resets the globals when it ends; such methods can be checked
+ * separately, in any order, and give the same errors as a sequential second pass.
+ * @author Tomer Zilberman
+ */
+final class MethodBodies {
+
+    /**
+     * The first error found in a range of lines.
+     */
+    static final class BodyError {
+        /** Index of the line in the line table. */
+        final int index;
+
+        /** The message of the error, or null if the validators threw a different exception. */
+        final String message;
+
+        /** The exception the validators threw instead of reporting an error, or null. */
+        final RuntimeException failure;
+
+        /**
+         * @param index Index of the line in the line table.
+         * @param message The message of the error.
+         * @param failure The unexpected exception, or null.
+         */
+        BodyError(int index, String message, RuntimeException failure) {
+            this.index = index;
+            this.message = message;
+            this.failure = failure;
+        }
+    }
+
+    private MethodBodies() {
+    }
+
+    /**
+     * Finds the methods of a source that passed the first pass, tracking braces the way the first pass does.
+     *
+     * @param table The code lines of the source.
+     * @return The first and last table index of each method, or null if a block is opened outside a method
+     *         or a method does not end with a return statement.
+     */
+    static List<int[]> find(LineTable table) {
+        List<int[]> bounds = new ArrayList<>();
+        int depth = 0, start = 0;
+        for (int i = 0; i < table.size(); i++) {
+            LineKind kind = table.getKind(i);
+            if (depth == 0) {
+                if (kind == LineKind.METHOD_DECLARATION) {
+                    start = i;
+                    depth = 1;
+                } else if (kind == LineKind.IF_WHILE_BLOCK || kind == LineKind.CLOSING_SCOPE) {
+                    return null;
+                }
+            } else if (kind == LineKind.IF_WHILE_BLOCK) {
+                depth++;
+            } else if (kind == LineKind.CLOSING_SCOPE && --depth == 0) {
+                if (table.getKind(i - 1) != LineKind.RETURN) return null;
+                bounds.add(new int[]{start, i});
+            }
+        }
+        return depth == 0 ? bounds : null;
+    }
+
+    /**
+     * Runs the second pass over a method body, or over global lines, from the state every method starts
+     * from. On an error, the symbol table is restored to that state.
+     *
+     * @param table The code lines of the source.
+     * @param first Index of the first line to check.
+     * @param last Index of the last line to check, inclusive.
+     * @param symbolTable The symbol table left by the first pass.
+     * @return The first error, or null if the lines are valid.
+     */
+    static BodyError check(LineTable table, int first, int last, SymbolTable symbolTable) {
+        ValidatorFactory factory = new ValidatorFactory(symbolTable);
+        FlightEvents.MethodEvent method = table.getKind(first) == LineKind.METHOD_DECLARATION ?
+                FlightEvents.beginMethod(table.getLine(first), table.getLineNumber(first)) : null;
+        for (int i = first; i <= last; i++) {
+            String line = table.getLine(i);
+            try {
+                long lineStart = Metrics.now();
+                LineKind kind = table.getKind(i);
+                Validator validator = factory.getValidator(line, kind);
+                if (validator != null) validator.validate(line);
+                Metrics.recordLine(Metrics.Phase.COMPILE, kind, lineStart);
+                FlightEvents.checkLine(Metrics.Phase.COMPILE, kind, table.getLineNumber(i), line, lineStart);
+            } catch (ValidationException e) {
+                symbolTable.exitToGlobalScope();
+                FlightEvents.endMethod(method, table.getLineNumber(i), e.getMessage());
+                return new BodyError(i, e.getMessage(), null);
+            } catch (RuntimeException e) {
+                // Rethrown by the caller only if a sequential second pass would get this far
+                symbolTable.exitToGlobalScope();
+                FlightEvents.endMethod(method, table.getLineNumber(i), e.toString());
+                return new BodyError(i, null, e);
+            }
+        }
+        FlightEvents.endMethod(method, table.getLineNumber(last), null);
+        return null;
+    }
+}
@@ -0,0 +1,342 @@
+package ex5.main;
+
+import ex5.parsing.FileProcessor;
+import ex5.parsing.LineKind;
+import ex5.parsing.PatternRegistry;
+import ex5.validation.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics of the validator, cheap enough to record on every run: the latency of each pass over
+ * a file, and of the validation of each line by pass and line kind, kept in histograms with power-of-two
+ * buckets. The report adds the counters kept by {@link PatternRegistry}, {@link SymbolTable} and
+ * {@link FileProcessor}, and is printed as text or JSON at exit when {@value #STATS_FLAG} is given.
+ * All recording is lock-free and may happen on any thread.
+ * @author Tomer Zilberman
+ */
+public final class Metrics {
+
+    /** Command-line flag that prints the report as text at exit; {@value #STATS_JSON_FLAG} prints JSON. */
+    public static final String STATS_FLAG = "--stats";
+
+    /** Command-line flag that prints the report as JSON at exit. */
+    public static final String STATS_JSON_FLAG = "--stats=json";
+
+    /**
+     * The passes over a file.
+     */
+    public enum Phase {
+        /** {@link Sjavac#initialSweep()}. */
+        SWEEP,
+        /** {@link Sjavac#compile()}. */
+        COMPILE,
+        /** {@link Sjavac#validateInOnePass()}. */
+        ONE_PASS
+    }
+
+    /**
+     * A histogram of non-negative values, with one bucket per power of two.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = Long.SIZE + 1;
+
+        /** Bucket i counts the values whose highest set bit is bit i - 1; bucket 0 counts zeros. */
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Constructs an empty histogram.
+         */
+        public Histogram() {
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        /**
+         * Records a value.
+         *
+         * @param value The value; negative values are recorded as 0.
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * @return The number of values recorded.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return The sum of the values recorded.
+         */
+        public long getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * @return The largest value recorded, or 0 if none was.
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls in.
+         *
+         * @param fraction The percentile, from 0 to 1.
+         * @return A value at least as large as the percentile, and at most the largest value recorded.
+         */
+        public long getPercentile(double fraction) {
+            long total = getCount(), seen = 0;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return Math.min(getMax(), upperBound(i));
+            }
+            return getMax();
+        }
+
+        /**
+         * @return The largest value counted by a bucket.
+         */
+        private static long upperBound(int bucket) {
+            return bucket == Long.SIZE ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+    }
+
+    private static final double P50 = 0.5, P90 = 0.9, P99 = 0.99, NANOS_PER_MICRO = 1e3;
+    private static final int TOP_PATTERNS = 10;
+
+    /** Latency of each pass over a file, in nanoseconds. */
+    private static final Histogram[] phases = new Histogram[Phase.values().length];
+
+    /** Latency of validating a line, by pass and line kind, in nanoseconds. */
+    private static final Histogram[][] lines = new Histogram[Phase.values().length][LineKind.values().length];
+
+    static {
+        for (Phase phase : Phase.values()) {
+            phases[phase.ordinal()] = new Histogram();
+            for (LineKind kind : LineKind.values()) lines[phase.ordinal()][kind.ordinal()] = new Histogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The current time, to pass to the record methods.
+     */
+    static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a pass over a file.
+     *
+     * @param phase The pass.
+     * @param start The time the pass started, from {@link #now()}.
+     */
+    static void recordPhase(Phase phase, long start) {
+        phases[phase.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records the validation of a line: getting its validator from the factory and running it.
+     *
+     * @param phase The pass.
+     * @param kind The kind of the line.
+     * @param start The time the validation started, from {@link #now()}.
+     */
+    static void recordLine(Phase phase, LineKind kind, long start) {
+        lines[phase.ordinal()][kind.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * @param phase A pass.
+     * @return The histogram of the latencies of the pass, in nanoseconds.
+     */
+    public static Histogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * @param phase A pass.
+     * @param kind A line kind.
+     * @return The histogram of the latencies of validating lines of the kind in the pass, in nanoseconds.
+     */
+    public static Histogram getLines(Phase phase, LineKind kind) {
+        return lines[phase.ordinal()][kind.ordinal()];
+    }
+
+    /**
+     * Removes the report flags from command-line arguments, and registers a hook that prints the report to
+     * standard error at exit if there was one.
+     *
+     * @param args The command-line arguments.
+     * @return The arguments without the report flags.
+     */
+    public static String[] installReport(String[] args) {
+        List<String> rest = new ArrayList<>(args.length);
+        Boolean json = null;
+        for (String arg : args) {
+            if (arg.equals(STATS_FLAG)) {
+                json = false;
+            } else if (arg.equals(STATS_JSON_FLAG)) {
+                json = true;
+            } else {
+                rest.add(arg);
+            }
+        }
+        if (json != null) {
+            boolean asJson = json;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(report(asJson))));
+        }
+        return rest.toArray(new String[0]);
+    }
+
+    /**
+     * Renders everything recorded since startup.
+     *
+     * @param json Whether to render JSON rather than text.
+     * @return The report.
+     */
+    public static String report(boolean json) {
+        return json ? reportJson() : reportText();
+    }
+
+    /**
+     * @return The report as text, with latencies in microseconds.
+     */
+    private static String reportText() {
+        final String HISTOGRAM_HEADER = "%-30s %10s %12s %10s %10s %10s %10s%n";
+        final String HISTOGRAM_ROW = "%-30s %10d %12.1f %10.1f %10.1f %10.1f %10.1f%n";
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, HISTOGRAM_HEADER,
+                "latency (us)", "count", "total", "p50", "p90", "p99", "max"));
+        for (Phase phase : Phase.values()) {
+            appendRow(out, HISTOGRAM_ROW, name(phase), getPhase(phase));
+        }
+        for (Phase phase : Phase.values()) {
+            for (LineKind kind : LineKind.values()) {
+                Histogram histogram = getLines(phase, kind);
+                if (histogram.getCount() > 0) appendRow(out, HISTOGRAM_ROW, name(phase) + "/" + kind, histogram);
+            }
+        }
+        out.append(String.format(Locale.ROOT, "regex: %d matches, %d patterns compiled%n",
+                PatternRegistry.getMatchCount(), PatternRegistry.getCompilationCount()));
+        List<Map.Entry<String, Long>> patterns = new ArrayList<>(PatternRegistry.getMatchCounts().entrySet());
+        patterns.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> pattern : patterns.subList(0, Math.min(TOP_PATTERNS, patterns.size()))) {
+            out.append(String.format(Locale.ROOT, "  %12d  %s%n", pattern.getValue(), pattern.getKey()));
+        }
+        long scopes = SymbolTable.getScopeCount();
+        out.append(String.format(Locale.ROOT,
+                "symbol table: %d lookups, %d scopes entered, max depth %d, mean depth %.2f%n",
+                SymbolTable.getLookupCount(), scopes, SymbolTable.getMaxDepth(),
+                scopes == 0 ? 0.0 : (double) SymbolTable.getDepthSum() / scopes));
+        out.append(String.format(Locale.ROOT, "input: %d bytes read%n", FileProcessor.getBytesRead()));
+        return out.toString();
+    }
+
+    /**
+     * Appends a row of the text report.
+     */
+    private static void appendRow(StringBuilder out, String format, String name, Histogram histogram) {
+        out.append(String.format(Locale.ROOT, format, name, histogram.getCount(),
+                histogram.getSum() / NANOS_PER_MICRO, histogram.getPercentile(P50) / NANOS_PER_MICRO,
+                histogram.getPercentile(P90) / NANOS_PER_MICRO, histogram.getPercentile(P99) / NANOS_PER_MICRO,
+                histogram.getMax() / NANOS_PER_MICRO));
+    }
+
+    /**
+     * @return The report as a JSON object, with latencies in nanoseconds.
+     */
+    private static String reportJson() {
+        StringBuilder out = new StringBuilder("{\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) out.append(',');
+            appendJson(out, name(phase), getPhase(phase));
+        }
+        out.append("},\"lines\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) out.append(',');
+            out.append('"').append(name(phase)).append("\":{");
+            boolean first = true;
+            for (LineKind kind : LineKind.values()) {
+                Histogram histogram = getLines(phase, kind);
+                if (histogram.getCount() == 0) continue;
+                if (!first) out.append(',');
+                first = false;
+                appendJson(out, kind.toString(), histogram);
+            }
+            out.append('}');
+        }
+        out.append("},\"regex\":{\"matches\":").append(PatternRegistry.getMatchCount())
+                .append(",\"compilations\":").append(PatternRegistry.getCompilationCount())
+                .append(",\"patterns\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> pattern : PatternRegistry.getMatchCounts().entrySet()) {
+            if (!first) out.append(',');
+            first = false;
+            out.append('"').append(escape(pattern.getKey())).append("\":").append(pattern.getValue());
+        }
+        out.append("}},\"symbolTable\":{\"lookups\":").append(SymbolTable.getLookupCount())
+                .append(",\"scopesEntered\":").append(SymbolTable.getScopeCount())
+                .append(",\"maxDepth\":").append(SymbolTable.getMaxDepth())
+                .append(",\"depthSum\":").append(SymbolTable.getDepthSum())
+                .append("},\"input\":{\"bytesRead\":").append(FileProcessor.getBytesRead())
+                .append("}}").append(System.lineSeparator());
+        return out.toString();
+    }
+
+    /**
+     * Appends a histogram as a JSON member.
+     */
+    private static void appendJson(StringBuilder out, String name, Histogram histogram) {
+        out.append('"').append(name).append("\":{\"count\":").append(histogram.getCount())
+                .append(",\"sumNanos\":").append(histogram.getSum())
+                .append(",\"p50Nanos\":").append(histogram.getPercentile(P50))
+                .append(",\"p90Nanos\":").append(histogram.getPercentile(P90))
+                .append(",\"p99Nanos\":").append(histogram.getPercentile(P99))
+                .append(",\"maxNanos\":").append(histogram.getMax()).append('}');
+    }
+
+    /**
+     * @return The name of a pass in the report.
+     */
+    private static String name(Phase phase) {
+        return phase.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Escapes a string for a JSON string literal.
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < ' ') {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
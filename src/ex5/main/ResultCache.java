@@ -0,0 +1,301 @@
+package ex5.main;
+
+import ex5.parsing.FileProcessor;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache on local disk that maps the content of a source file to its validation result and
+ * error message, so unchanged files are not validated again. Each entry is a small file named by the
+ * SHA-256 of the source content, the {@link #VALIDATOR_VERSION} and the default charset; entries written by
+ * another validator version are never hit, are deleted when read, and age out of the cache.
+ * The cache is kept under a size limit by evicting the least recently used entries (by modification time,
+ * which is refreshed on every hit).
+ * <p>
+ * Enable it with -D{@value #CACHE_PROPERTY}=&lt;directory&gt;, and optionally set the limit in bytes with
+ * -D{@value #MAX_BYTES_PROPERTY}=N.
+ * @author Tomer Zilberman
+ */
+public class ResultCache {
+    /** Bump whenever a change to the validators can change a verdict or message. */
+    public static final String VALIDATOR_VERSION = "5";
+
+    /** System property holding the cache directory. The cache is disabled when it is unset. */
+    public static final String CACHE_PROPERTY = "sjavac.cache";
+
+    /** System property holding the size limit of the cache, in bytes. */
+    public static final String MAX_BYTES_PROPERTY = "sjavac.cache.maxBytes";
+
+    /** Default size limit of the cache, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /** Value of {@link Entry#compileCode} when the second pass was not run. */
+    public static final int NOT_RUN = -1;
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String SEPARATOR = "\n";
+    private static final int VERSION_LINE = 0, SWEEP_LINE = 1, COMPILE_LINE = 2, LINES_LINE = 3,
+            MESSAGE_LINE = 4, ENTRY_LINES = 5;
+
+    /**
+     * A cached validation result.
+     */
+    public static class Entry {
+        /** The result of {@link Sjavac#initialSweep()}. */
+        public final int sweepCode;
+
+        /** The result of {@link Sjavac#compile()}, or {@link #NOT_RUN}. */
+        public final int compileCode;
+
+        /** Number of lines in the source. */
+        public final int lines;
+
+        /**
+         * The message of the error that decided the verdict, found by the first pass if it failed, or an
+         * empty string if there was none.
+         */
+        public final String message;
+
+        /**
+         * @param sweepCode The result of the first pass.
+         * @param compileCode The result of the second pass, or NOT_RUN.
+         * @param lines Number of lines in the source.
+         * @param message The error message, or null.
+         */
+        public Entry(int sweepCode, int compileCode, int lines, String message) {
+            this.sweepCode = sweepCode;
+            this.compileCode = compileCode;
+            this.lines = lines;
+            this.message = message == null ? "" : message;
+        }
+
+        /**
+         * @return The single verdict, as returned by {@link Sjavac#validate()}.
+         */
+        public int verdict() {
+            return sweepCode != Sjavac.LEGAL_CODE ? sweepCode : compileCode;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Opens (and creates if needed) a cache directory.
+     *
+     * @param directory The cache directory.
+     * @param maxBytes The size limit of the cache, in bytes.
+     * @throws IOException If the directory cannot be created.
+     */
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens the cache configured by the system properties.
+     *
+     * @return The cache, or null if caching is disabled or its directory cannot be created.
+     */
+    public static ResultCache fromSystemProperties() {
+        String directory = System.getProperty(CACHE_PROPERTY);
+        if (directory == null) return null;
+        try {
+            return new ResultCache(Paths.get(directory), Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+        } catch (IOException e) {
+            System.err.println("Result cache disabled: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Validates a file, or returns its cached result if the same content was validated before.
+     *
+     * @param path The file to validate.
+     * @param bothPasses Whether the second pass must run even if the first one fails, as the single file
+     *                   mode does; otherwise it runs only after a successful first pass.
+     * @return The validation result.
+     * @throws IOException If the file cannot be read.
+     */
+    public Entry validate(String path, boolean bothPasses) throws IOException {
+        byte[] content = Files.readAllBytes(Paths.get(path));
+        String key = key(content);
+        Entry entry = read(key);
+        if (entry != null && (entry.compileCode != NOT_RUN || !bothPasses)) {
+            hits.increment();
+            // The first pass prints this error when it finds it, so a hit prints it too
+            if (entry.sweepCode != Sjavac.LEGAL_CODE && entry.message.equals(Sjavac.UNMATCHED_BRACES_ERROR)) {
+                System.err.println(entry.message);
+            }
+            return entry;
+        }
+        misses.increment();
+
+        Sjavac compiler = new Sjavac(FileProcessor.ofText(new String(content, Charset.defaultCharset())));
+        int sweepCode = compiler.initialSweep();
+        String message = compiler.getErrorMessage();
+        int compileCode = (bothPasses || sweepCode == Sjavac.LEGAL_CODE) ? compiler.compile() : NOT_RUN;
+        if (sweepCode == Sjavac.LEGAL_CODE) message = compiler.getErrorMessage();
+        entry = new Entry(sweepCode, compileCode, compiler.getSourceLineCount(), message);
+        put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Computes the cache key of a source.
+     *
+     * @param content The bytes of the source.
+     * @return The key, as a hexadecimal string.
+     */
+    public static String key(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update((VALIDATOR_VERSION + SEPARATOR + Charset.defaultCharset().name() + SEPARATOR)
+                    .getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest(content);
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) key.append(String.format("%02x", b));
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM provides SHA-256
+        }
+    }
+
+    /**
+     * Looks up a cached result and marks it as recently used.
+     *
+     * @param key The key of the source.
+     * @return The cached result, or null on a miss.
+     */
+    public Entry get(String key) {
+        Entry entry = read(key);
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Reads an entry and marks it as recently used, without counting the lookup.
+     * Entries of other validator versions and unreadable entries are deleted.
+     *
+     * @param key The key of the source.
+     * @return The cached result, or null if there is none.
+     */
+    private Entry read(String key) {
+        Path file = directory.resolve(key);
+        if (!Files.exists(file)) return null;
+        try {
+            String[] fields = Files.readString(file, StandardCharsets.UTF_8).split(SEPARATOR, ENTRY_LINES);
+            if (fields.length == ENTRY_LINES && fields[VERSION_LINE].equals(VALIDATOR_VERSION)) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return new Entry(Integer.parseInt(fields[SWEEP_LINE]), Integer.parseInt(fields[COMPILE_LINE]),
+                        Integer.parseInt(fields[LINES_LINE]), fields[MESSAGE_LINE]);
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Treated as a stale entry below
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Another process may have replaced or removed it
+        }
+        return null;
+    }
+
+    /**
+     * Stores a result. The entry is written to a temporary file and moved into place, so concurrent
+     * readers never see a partial entry.
+     *
+     * @param key The key of the source.
+     * @param entry The result to store.
+     */
+    public void put(String key, Entry entry) {
+        String text = VALIDATOR_VERSION + SEPARATOR + entry.sweepCode + SEPARATOR + entry.compileCode +
+                SEPARATOR + entry.lines + SEPARATOR + entry.message;
+        try {
+            Path temporary = Files.createTempFile(directory, key, TEMPORARY_SUFFIX);
+            Files.writeString(temporary, text, StandardCharsets.UTF_8);
+            try {
+                Files.move(temporary, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not cache result: " + e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in its size limit.
+     *
+     * @throws IOException If the cache directory cannot be listed.
+     */
+    public void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(Files::isRegularFile).forEach(files::add);
+        }
+        List<FileTime> times = new ArrayList<>(files.size());
+        long total = 0;
+        for (Path file : files) {
+            times.add(Files.getLastModifiedTime(file));
+            total += Files.size(file);
+        }
+        if (total <= maxBytes) return;
+
+        List<Integer> order = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) order.add(i);
+        order.sort((a, b) -> times.get(a).compareTo(times.get(b)));
+        for (int i : order) {
+            if (total <= maxBytes) break;
+            long size = Files.size(files.get(i));
+            if (Files.deleteIfExists(files.get(i))) total -= size;
+        }
+    }
+
+    /**
+     * Evicts old entries and reports the hit and miss counts on stderr.
+     */
+    public void close() {
+        try {
+            evict();
+        } catch (IOException e) {
+            System.err.println("Could not evict cache entries: " + e);
+        }
+        System.err.printf("cache: %d hits, %d misses%n", getHits(), getMisses());
+    }
+
+    /**
+     * @return Number of lookups that found a result.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that found nothing.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -1,12 +1,24 @@
 package ex5.main;
 
+import ex5.exceptions.ErrorCode;
 import ex5.exceptions.FileException;
 import ex5.exceptions.ValidationException;
 import ex5.parsing.FileProcessor;
-import ex5.parsing.RegexUtils;
+import ex5.parsing.LineClassifier;
+import ex5.parsing.LineKind;
+import ex5.parsing.LineTable;
 import ex5.validation.*;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main class for compiling a custom language. Reads a file, performs syntax and semantic validation.
@@ -16,9 +28,30 @@ public class Sjavac {
     public static final int LEGAL_CODE = 0;
     public static final int INVALID_CODE = 1;
     public static final int IO_ERROR = 2;
+
+    /** The file name that stands for standard input in {@link #main}. */
+    public static final String STDIN = "-";
+
+    /** Mode flag of {@link #main} that validates the source in a single pass, see {@link #validateInOnePass()}. */
+    public static final String ONE_PASS_FLAG = "--one-pass";
+
+    /** Mode flag of {@link #main} that reports every error in the source instead of only the first. */
+    public static final String ALL_ERRORS_FLAG = "--all-errors";
+
+    /** System property holding the number of threads that check method bodies in {@link #main}; 1 by default. */
+    public static final String METHOD_THREADS_PROPERTY = "sjavac.methodThreads";
+
+    private static final int CHUNKS_PER_THREAD = 4;
     public final FileProcessor fileProcessor;
-    private final SymbolTable symbolTable;
-    private static final String UNMATCHED_BRACES_ERROR = "Unmatched opening/closing braces.";
+    private SymbolTable symbolTable;
+    private LineTable lineTable;
+    private int sourceLineCount;
+    private String errorMessage;
+    private boolean sweptClean; // Whether the symbol table is exactly as a successful first pass left it
+    private FlightEvents.FileEvent fileEvent; // The flight recorder event of the passes run so far, or null
+    private List<Diagnostic> diagnostics; // The errors found so far by collectDiagnostics, or null to stop at the first
+    private BitSet sweepFailures; // Line table indexes of the lines the first pass reported, while collecting
+    static final String UNMATCHED_BRACES_ERROR = "Unmatched opening/closing braces.";
 
     /**
      * Initializes the compiler with the given file.
@@ -27,76 +60,670 @@ public class Sjavac {
      */
     public Sjavac(String fileName) {
         try {
-            this.fileProcessor = new FileProcessor(fileName);
+            this.fileProcessor = FileProcessor.open(fileName);
         } catch (FileException e) {
             throw new RuntimeException(e);
         }
         symbolTable = new SymbolTable();
     }
 
+    /**
+     * Initializes the compiler with an already opened source.
+     *
+     * @param fileProcessor The source to compile.
+     */
+    public Sjavac(FileProcessor fileProcessor) {
+        this(fileProcessor, new SymbolTable());
+    }
+
+    /**
+     * Initializes the compiler with an already opened source and a symbol table to fill, such as a table
+     * emptied with {@link SymbolTable#clear()} after validating another source.
+     *
+     * @param fileProcessor The source to compile.
+     * @param symbolTable An empty symbol table.
+     */
+    public Sjavac(FileProcessor fileProcessor, SymbolTable symbolTable) {
+        this.fileProcessor = fileProcessor;
+        this.symbolTable = symbolTable;
+    }
+
     /**
      * Performs an initial sweep of the file to validate the syntax and braces.
+     * While sweeping, the code lines of the file are stored in a line table, so the file is read only once.
      *
      * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
      */
     public int initialSweep() {
-        String line;
+        long start = Metrics.now();
+        fileEvent = FlightEvents.beginFile(fileProcessor.getName());
+        try {
+            int result = sweep();
+            fileEvent.sweepDone(start, result);
+            return result;
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.SWEEP, start);
+        }
+    }
+
+    /**
+     * Does the work of {@link #initialSweep()}.
+     *
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    private int sweep() {
+        CharSequence rawLine;
+        int lineNumber = 0;
+        int result = LEGAL_CODE;
         ValidatorFactory factory = new ValidatorFactory(symbolTable);
+        lineTable = new LineTable();
 
-        while ((line = fileProcessor.readLine()) != null) {
-            line = line.trim();
-            if (RegexUtils.isCommentOrEmpty(line)) continue;
-            try {
-                Validator validator = factory.getValidatorForSweep(line);
-                if (validator != null) validator.validate(line);
-            } catch (ValidationException e) {
-                return INVALID_CODE;
+        while ((rawLine = fileProcessor.readLine()) != null) {
+            lineNumber++;
+            long classifyStart = Metrics.now();
+            CharSequence trimmed = FileProcessor.trim(rawLine);
+            LineKind kind = LineClassifier.classify(trimmed);
+            if (kind == LineKind.COMMENT || kind == LineKind.EMPTY) continue;
+            String line = trimmed.toString();
+            lineTable.add(line, kind, lineNumber);
+            // After the first error, the rest of the file is only stored for the second pass, unless collecting
+            if (result == LEGAL_CODE || diagnostics != null) {
+                try {
+                    long lineStart = Metrics.now();
+                    Validator validator = factory.getValidatorForSweep(line, kind);
+                    if (validator != null) validator.validate(line);
+                    Metrics.recordLine(Metrics.Phase.SWEEP, kind, lineStart);
+                } catch (ValidationException e) {
+                    errorMessage = e.getMessage();
+                    result = INVALID_CODE;
+                    if (diagnostics != null) {
+                        sweepFailures.set(lineTable.size() - 1);
+                        diagnostics.add(new Diagnostic(lineNumber, e.getCode(), errorMessage));
+                    }
+                }
             }
+            FlightEvents.checkLine(Metrics.Phase.SWEEP, kind, lineNumber, line, classifyStart);
         }
+        fileProcessor.close();
+        sourceLineCount = lineNumber;
+        if (result != LEGAL_CODE && diagnostics == null) return result;
 
         if (symbolTable.getScope() != 0) {
-            System.err.println(UNMATCHED_BRACES_ERROR);
+            errorMessage = UNMATCHED_BRACES_ERROR;
+            if (diagnostics == null) {
+                System.err.println(UNMATCHED_BRACES_ERROR);
+            } else {
+                diagnostics.add(new Diagnostic(lineNumber, ErrorCode.UNMATCHED_BRACES, UNMATCHED_BRACES_ERROR));
+            }
             return INVALID_CODE;
         }
+        if (result != LEGAL_CODE) return result;
+        sweptClean = true;
         return LEGAL_CODE;
     }
 
     /**
      * Compiles the file and checks for validation errors.
+     * Walks the line table filled by {@link #initialSweep()}, without reading the file again.
      *
      * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
      */
     public int compile() {
-        String line;
+        long start = Metrics.now();
+        fileEvent();
+        try {
+            return finishFile(start, compileSequentially());
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.COMPILE, start);
+        }
+    }
+
+    /**
+     * Does the work of {@link #compile()}.
+     *
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    private int compileSequentially() {
+        sweptClean = false;
+        if (lineTable == null) readLineTable();
         ValidatorFactory factory = new ValidatorFactory(symbolTable);
+        FlightEvents.MethodEvent method = null;
+        int result = LEGAL_CODE;
+        int depth = 0; // Nesting depth before the line, counted as the first pass counts it
 
-        while ((line = fileProcessor.readLine()) != null) {
-            line = line.trim();
-            if (!RegexUtils.isCommentOrEmpty(line)) {
+        for (int i = 0; i < lineTable.size(); i++) {
+            String line = lineTable.getLine(i);
+            LineKind kind = lineTable.getKind(i);
+            int lineNumber = lineTable.getLineNumber(i);
+            if (sweepFailures != null && sweepFailures.get(i)) {
+                // Already reported by the first pass; a method whose declaration failed is skipped as a whole
+                if (kind == LineKind.METHOD_DECLARATION && depth == 0) i = endOfBlock(i, depth);
+                continue;
+            }
+            if (kind == LineKind.METHOD_DECLARATION && method == null) {
+                method = FlightEvents.beginMethod(line, lineNumber);
+            }
+            try {
+                long lineStart = Metrics.now();
+                Validator validator = factory.getValidator(line, kind);
+                if (validator != null) validator.validate(line);
+                Metrics.recordLine(Metrics.Phase.COMPILE, kind, lineStart);
+                FlightEvents.checkLine(Metrics.Phase.COMPILE, kind, lineNumber, line, lineStart);
+            } catch (ValidationException e) {
+                errorMessage = e.getMessage();
+                FlightEvents.endMethod(method, lineNumber, errorMessage);
+                if (diagnostics == null) return INVALID_CODE;
+                diagnostics.add(new Diagnostic(lineNumber, e.getCode(), errorMessage));
+                result = INVALID_CODE;
+                method = null;
+                if (depth == 0 && e.getCode() == ErrorCode.NESTED_METHOD) {
+                    // The previous method did not end with a return; check this one from a clean state
+                    factory = new ValidatorFactory(symbolTable);
+                    symbolTable.exitToGlobalScope();
+                    i--;
+                } else if (depth > 0 || kind == LineKind.METHOD_DECLARATION) {
+                    // Skip the rest of the method and go on with the next one from a clean state
+                    i = endOfBlock(i, depth);
+                    factory = new ValidatorFactory(symbolTable);
+                    symbolTable.exitToGlobalScope();
+                    depth = 0;
+                } else {
+                    depth = nextDepth(kind, depth);
+                }
+                continue;
+            }
+            depth = nextDepth(kind, depth);
+            if (kind == LineKind.CLOSING_SCOPE && symbolTable.getScope() == 0) {
+                FlightEvents.endMethod(method, lineNumber, null);
+                method = null;
+            }
+        }
+
+        if (symbolTable.getScope() != 0) {
+            errorMessage = UNMATCHED_BRACES_ERROR;
+            if (diagnostics == null) return INVALID_CODE;
+            diagnostics.add(new Diagnostic(sourceLineCount, ErrorCode.UNMATCHED_BRACES, errorMessage));
+            result = INVALID_CODE;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the end of the method or block open at the given line, the way the first pass matches braces.
+     *
+     * @param index Line table index of a line inside the method or block, or of its opening line.
+     * @param depth Nesting depth before that line.
+     * @return The index of the line that closes the method or block, or the last index if none does.
+     */
+    private int endOfBlock(int index, int depth) {
+        for (int i = index; i < lineTable.size(); i++) {
+            depth = nextDepth(lineTable.getKind(i), depth);
+            if (depth == 0) return i;
+        }
+        return lineTable.size() - 1;
+    }
+
+    /**
+     * Counts braces the way the first pass does: a method declaration only opens a scope in the global scope,
+     * and a closing brace in the global scope is an error that leaves it unchanged.
+     *
+     * @param kind The kind of a line.
+     * @param depth Nesting depth before the line.
+     * @return Nesting depth after the line.
+     */
+    private static int nextDepth(LineKind kind, int depth) {
+        switch (kind) {
+            case IF_WHILE_BLOCK:
+                return depth + 1;
+            case METHOD_DECLARATION:
+                return depth == 0 ? 1 : depth;
+            case CLOSING_SCOPE:
+                return Math.max(depth - 1, 0);
+            default:
+                return depth;
+        }
+    }
+
+    /**
+     * Compiles the file, checking method bodies on several threads. Global lines are checked first, and then
+     * each thread checks a share of the methods with its own copy of the global scope; the result, and the
+     * error reported, are the same as those of {@link #compile()}. Runs sequentially unless the first pass
+     * succeeded and every method ends with a return statement, since only then do all methods start from
+     * the same state.
+     *
+     * @param threads Number of threads to use.
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    public int compile(int threads) {
+        List<int[]> methods = (threads > 1 && sweptClean) ? MethodBodies.find(lineTable) : null;
+        if (methods == null) return compile();
+        long start = Metrics.now();
+        fileEvent();
+        try {
+            return finishFile(start, compileMethods(methods, threads));
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.COMPILE, start);
+        }
+    }
+
+    /**
+     * Does the work of {@link #compile(int)} once it knows the methods can be checked separately.
+     *
+     * @param methods The first and last line table index of each method, in order.
+     * @param threads Number of threads to use.
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    private int compileMethods(List<int[]> methods, int threads) {
+        sweptClean = false;
+
+        MethodBodies.BodyError first = null;
+        int globalStart = 0;
+        for (int i = 0; i <= methods.size() && first == null; i++) {
+            int globalEnd = i < methods.size() ? methods.get(i)[0] - 1 : lineTable.size() - 1;
+            if (globalStart <= globalEnd) {
+                first = MethodBodies.check(lineTable, globalStart, globalEnd, symbolTable);
+            }
+            if (i < methods.size()) globalStart = methods.get(i)[1] + 1;
+        }
+
+        AtomicInteger firstError = new AtomicInteger(first == null ? lineTable.size() : first.index);
+        int chunks = Math.min(methods.size(), threads * CHUNKS_PER_THREAD);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<MethodBodies.BodyError>> tasks = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                List<int[]> share = methods.subList(chunk * methods.size() / chunks,
+                        (chunk + 1) * methods.size() / chunks);
+                tasks.add(pool.submit(() -> checkMethods(share, firstError)));
+            }
+            for (ForkJoinTask<MethodBodies.BodyError> task : tasks) {
+                MethodBodies.BodyError error = task.join();
+                if (error != null && (first == null || error.index < first.index)) first = error;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (first == null) return LEGAL_CODE;
+        if (first.failure != null) throw first.failure;
+        errorMessage = first.message;
+        return INVALID_CODE;
+    }
+
+    /**
+     * Checks a share of the methods with a private copy of the global scope, stopping at the first error
+     * or at a method after an error another thread already found.
+     *
+     * @param methods The first and last line table index of each method, in order.
+     * @param firstError Index of the first error found so far by any thread.
+     * @return The first error in the share, or null if there is none before firstError.
+     */
+    private MethodBodies.BodyError checkMethods(List<int[]> methods, AtomicInteger firstError) {
+        SymbolTable table = new SymbolTable(symbolTable);
+        for (int[] method : methods) {
+            if (method[0] >= firstError.get()) return null;
+            MethodBodies.BodyError error = MethodBodies.check(lineTable, method[0], method[1], table);
+            if (error != null) {
+                firstError.accumulateAndGet(error.index, Math::min);
+                return error;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs both passes and returns a single verdict for the file.
+     *
+     * @return LEGAL_CODE if valid, INVALID_CODE if either pass found errors.
+     */
+    public int validate() {
+        int result = initialSweep();
+        if (result != LEGAL_CODE) {
+            fileEvent.finish(sourceLineCount, errorMessage);
+            fileEvent = null;
+            return result;
+        }
+        return compile();
+    }
+
+    /**
+     * Validates the file in a single pass, reading and classifying each line once, with the same verdict as
+     * {@link #validate()}. Globals are declared in order, and each method is registered when its declaration
+     * is reached and its body checked right away; a call to a method declared further down is recorded with
+     * the types of its arguments in the scope of the call, and all such calls are checked once the file ends.
+     * <p>
+     * A single pass cannot give a method body the view of the globals the two passes give it when a global
+     * is declared or assigned after a method, or when the global scope holds an if/while block. Such a file
+     * is then validated in two passes over the lines already read, still without reading the file again.
+     * The error reported may differ from that of {@link #validate()} when a file has several errors.
+     *
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    public int validateInOnePass() {
+        long start = Metrics.now();
+        fileEvent = FlightEvents.beginFile(fileProcessor.getName());
+        try {
+            int result = onePass();
+            fileEvent.sweepDone(start, result);
+            fileEvent.finish(sourceLineCount, errorMessage);
+            fileEvent = null;
+            return result;
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.ONE_PASS, start);
+        }
+    }
+
+    /**
+     * Does the work of {@link #validateInOnePass()}.
+     *
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    private int onePass() {
+        CharSequence rawLine;
+        int lineNumber = 0;
+        int result = LEGAL_CODE;
+        int depth = 0; // Nesting depth before the line, counted as the first pass counts it
+        boolean methodSeen = false, needsTwoPasses = false;
+        PendingCalls pendingCalls = new PendingCalls();
+        ValidatorFactory factory = new ValidatorFactory(symbolTable, pendingCalls);
+        lineTable = new LineTable();
+
+        while ((rawLine = fileProcessor.readLine()) != null) {
+            lineNumber++;
+            long classifyStart = Metrics.now();
+            CharSequence trimmed = FileProcessor.trim(rawLine);
+            LineKind kind = LineClassifier.classify(trimmed);
+            if (kind == LineKind.COMMENT || kind == LineKind.EMPTY) continue;
+            String line = trimmed.toString();
+            lineTable.add(line, kind, lineNumber);
+            if (depth == 0 && (kind == LineKind.IF_WHILE_BLOCK || methodSeen
+                    && (kind == LineKind.VARIABLE_DECLARATION || kind == LineKind.VARIABLE_VALUE_CHANGE))) {
+                needsTwoPasses = true;
+            }
+            methodSeen |= kind == LineKind.METHOD_DECLARATION;
+            depth = nextDepth(kind, depth);
+            // After the first error, or once two passes are needed, the rest of the file is only stored
+            if (result == LEGAL_CODE && !needsTwoPasses) {
                 try {
-                    Validator validator = factory.getValidator(line);
+                    long lineStart = Metrics.now();
+                    Validator validator = factory.getValidatorInOnePass(line, kind);
                     if (validator != null) validator.validate(line);
+                    Metrics.recordLine(Metrics.Phase.ONE_PASS, kind, lineStart);
                 } catch (ValidationException e) {
-                    return INVALID_CODE;
+                    errorMessage = e.getMessage();
+                    result = INVALID_CODE;
                 }
             }
+            FlightEvents.checkLine(Metrics.Phase.ONE_PASS, kind, lineNumber, line, classifyStart);
         }
+        fileProcessor.close();
+        sourceLineCount = lineNumber;
 
-        if (symbolTable.getScope() != 0) return INVALID_CODE;
+        if (needsTwoPasses) {
+            // An error found so far may not be one the two passes find
+            errorMessage = null;
+            symbolTable = new SymbolTable();
+            return sweepLineTable() == LEGAL_CODE ? compileSequentially() : INVALID_CODE;
+        }
+        if (result != LEGAL_CODE) return result;
+        if (symbolTable.getScope() != 0) {
+            errorMessage = UNMATCHED_BRACES_ERROR;
+            return INVALID_CODE;
+        }
+        try {
+            pendingCalls.resolve(symbolTable);
+        } catch (ValidationException e) {
+            errorMessage = e.getMessage();
+            return INVALID_CODE;
+        }
         return LEGAL_CODE;
     }
 
+    /**
+     * Does the work of {@link #initialSweep()} over the line table instead of the file.
+     *
+     * @return LEGAL_CODE if valid, INVALID_CODE if errors found.
+     */
+    private int sweepLineTable() {
+        ValidatorFactory factory = new ValidatorFactory(symbolTable);
+        for (int i = 0; i < lineTable.size(); i++) {
+            String line = lineTable.getLine(i);
+            try {
+                Validator validator = factory.getValidatorForSweep(line, lineTable.getKind(i));
+                if (validator != null) validator.validate(line);
+            } catch (ValidationException e) {
+                errorMessage = e.getMessage();
+                return INVALID_CODE;
+            }
+        }
+        if (symbolTable.getScope() != 0) {
+            errorMessage = UNMATCHED_BRACES_ERROR;
+            return INVALID_CODE;
+        }
+        return LEGAL_CODE;
+    }
+
+    /**
+     * Runs both passes without stopping at the first error, and returns every error found. After an error in
+     * a method body the rest of that method is skipped, and checking goes on with the next method from a clean
+     * state; after an error in the global scope it goes on with the next line. If the braces of the file do not
+     * match, only the first pass runs. An error can hide others caused by the same line, and a skipped method
+     * is not checked past its first error, so the errors of a file may take more than one run to fix; the
+     * verdict is INVALID_CODE exactly when the list is not empty, as with {@link #validate()}.
+     *
+     * @return The errors found, ordered by line number.
+     */
+    public List<Diagnostic> collectDiagnostics() {
+        diagnostics = new ArrayList<>();
+        sweepFailures = new BitSet();
+        try {
+            initialSweep();
+            if (symbolTable.getScope() == 0) {
+                compile();
+            } else {
+                fileEvent.finish(sourceLineCount, errorMessage);
+                fileEvent = null;
+            }
+            diagnostics.sort(Comparator.comparingInt(diagnostic -> diagnostic.line));
+            errorMessage = diagnostics.isEmpty() ? null : diagnostics.get(0).message;
+            return Collections.unmodifiableList(diagnostics);
+        } finally {
+            diagnostics = null;
+            sweepFailures = null;
+        }
+    }
+
+    /**
+     * @return The number of lines read from the source, including comments and empty lines.
+     */
+    public int getSourceLineCount() {
+        return sourceLineCount;
+    }
+
+    /**
+     * @return The message of the last error found, or null if no error was found.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return The code lines read from the source, or null if no pass has run yet.
+     */
+    public LineTable getLineTable() {
+        return lineTable;
+    }
+
+    /**
+     * @return The symbol table filled by the passes that ran so far.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * @return The flight recorder event of the current run, started by the first pass or on first use.
+     */
+    private FlightEvents.FileEvent fileEvent() {
+        if (fileEvent == null) fileEvent = FlightEvents.beginFile(fileProcessor.getName());
+        return fileEvent;
+    }
+
+    /**
+     * Ends the flight recorder event of the current run after the second pass.
+     *
+     * @param start The time the second pass started, from {@link Metrics#now()}.
+     * @param result The result of the second pass.
+     * @return The result.
+     */
+    private int finishFile(long start, int result) {
+        FlightEvents.FileEvent event = fileEvent;
+        event.compileDone(start, result);
+        event.finish(sourceLineCount, errorMessage);
+        fileEvent = null;
+        return result;
+    }
+
+    /**
+     * Fills the line table from the file without validating, for when compile is called without a sweep.
+     */
+    private void readLineTable() {
+        CharSequence rawLine;
+        int lineNumber = 0;
+        lineTable = new LineTable();
+        while ((rawLine = fileProcessor.readLine()) != null) {
+            lineNumber++;
+            CharSequence line = FileProcessor.trim(rawLine);
+            LineKind kind = LineClassifier.classify(line);
+            if (kind != LineKind.COMMENT && kind != LineKind.EMPTY) {
+                lineTable.add(line.toString(), kind, lineNumber);
+            }
+        }
+        fileProcessor.close();
+        sourceLineCount = lineNumber;
+    }
+
     /**
      * Main method to run the compiler with the given file.
      *
-     * @param args Command-line arguments; the first argument is the file name.
-     * @throws FileNotFoundException If the file cannot be found.
+     * @param args Command-line arguments; the first argument is the file name ({@value #STDIN} reads the source
+     *             from standard input as it arrives, without touching the filesystem), or a mode flag followed by
+     *             the arguments of that mode: {@value #ONE_PASS_FLAG} (file or {@value #STDIN}; prints the
+     *             single verdict of {@link #validateInOnePass()}), {@value #ALL_ERRORS_FLAG} (see
+     *             {@link #reportAllErrors}),
+     *             {@value BatchRunner#BATCH_FLAG} (see {@link BatchRunner}),
+     *             {@value WatchRunner#WATCH_FLAG} (see {@link WatchRunner}),
+     *             {@value SjavacServer#SERVER_FLAG} (see {@link SjavacServer}) or
+     *             {@value SjavacClient#CLIENT_FLAG} (see {@link SjavacClient}). {@value Metrics#STATS_FLAG} or
+     *             {@value Metrics#STATS_JSON_FLAG}, anywhere, prints the metrics to standard error at exit.
+     * @throws IOException If the file or a batch directory cannot be read, or the server socket cannot be bound.
      */
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
+        args = Metrics.installReport(args);
+        switch (args[0]) {
+            case ONE_PASS_FLAG:
+                validateInOnePass(args[1]);
+                return;
+            case ALL_ERRORS_FLAG:
+                reportAllErrors(args[1]);
+                return;
+            case BatchRunner.BATCH_FLAG:
+                BatchRunner.main(args);
+                return;
+            case WatchRunner.WATCH_FLAG:
+                WatchRunner.main(args);
+                return;
+            case SjavacServer.SERVER_FLAG:
+                SjavacServer.main(args);
+                return;
+            case SjavacClient.CLIENT_FLAG:
+                SjavacClient.main(args);
+                return;
+            default:
+                break;
+        }
         String fileName = args[0];
+        if (fileName.equals(STDIN)) {
+            validateStream();
+            return;
+        }
+        ResultCache cache = ResultCache.fromSystemProperties();
+        if (cache != null) {
+            try {
+                ResultCache.Entry entry = cache.validate(fileName, true);
+                System.out.println(entry.sweepCode);
+                System.out.println(entry.compileCode);
+                return;
+            } catch (RuntimeException e) {
+                // Runs that crash are not cached; rerun below to report them as usual
+            } finally {
+                cache.close();
+            }
+        }
         Sjavac compiler = new Sjavac(fileName);
         System.out.println(compiler.initialSweep());
-        compiler.fileProcessor.reset();
-        System.out.println(compiler.compile());
+        System.out.println(compiler.compile(Integer.getInteger(METHOD_THREADS_PROPERTY, 1)));
+    }
+
+    /**
+     * Validates a file, or standard input if the name is {@value #STDIN}, in a single pass, and prints the verdict,
+     * or IO_ERROR if standard input cannot be read.
+     *
+     * @param fileName The name of the file to validate.
+     */
+    private static void validateInOnePass(String fileName) {
+        Sjavac compiler = fileName.equals(STDIN) ? new Sjavac(FileProcessor.ofStream(System.in))
+                : new Sjavac(fileName);
+        int code;
+        try {
+            code = compiler.validateInOnePass();
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            code = IO_ERROR;
+        }
+        System.out.println(code);
+    }
+
+    /**
+     * Validates a file, or standard input if the name is {@value #STDIN}, and reports every error found:
+     * each on its own line of standard error, as "name:line: id message", and then a single code on standard
+     * output, LEGAL_CODE if there are none, INVALID_CODE otherwise, or IO_ERROR if standard input cannot be read.
+     * See {@link #collectDiagnostics()}.
+     *
+     * @param fileName The name of the file to validate.
+     */
+    private static void reportAllErrors(String fileName) {
+        Sjavac compiler = fileName.equals(STDIN) ? new Sjavac(FileProcessor.ofStream(System.in))
+                : new Sjavac(fileName);
+        List<Diagnostic> found;
+        try {
+            found = compiler.collectDiagnostics();
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            System.out.println(IO_ERROR);
+            return;
+        }
+        for (Diagnostic diagnostic : found) {
+            System.err.println(fileName + ":" + diagnostic);
+        }
+        System.out.println(found.isEmpty() ? LEGAL_CODE : INVALID_CODE);
+    }
+
+    /**
+     * Validates the source read from standard input, printing the same codes as for a file, or IO_ERROR
+     * if standard input cannot be read.
+     */
+    private static void validateStream() {
+        Sjavac compiler = new Sjavac(FileProcessor.ofStream(System.in));
+        int sweepCode;
+        try {
+            sweepCode = compiler.initialSweep();
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            System.out.println(IO_ERROR);
+            return;
+        }
+        System.out.println(sweepCode);
+        System.out.println(compiler.compile(Integer.getInteger(METHOD_THREADS_PROPERTY, 1)));
     }
 }
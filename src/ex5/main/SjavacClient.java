@@ -0,0 +1,90 @@
+package ex5.main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A thin client for {@link SjavacServer}. Sends one file path (or the source read from stdin when the file
+ * is "-") and prints the codes the server returns, one per line, the same lines {@link Sjavac} prints: the
+ * code of each pass, or IO_ERROR alone if the source has no verdict. If the server cannot be reached,
+ * prints IO_ERROR.
+ * <p>
+ * Usage: Sjavac --client &lt;socket path&gt; (file | -)
+ * @author Tomer Zilberman
+ */
+public class SjavacClient {
+    /** The flag that selects client mode in {@link Sjavac#main(String[])}. */
+    public static final String CLIENT_FLAG = "--client";
+
+    private static final String LINE_BREAK = "\n";
+    private static final int SOCKET_INDEX = 1, FILE_INDEX = 2, ARGUMENTS = 3;
+
+    private SjavacClient() {
+    }
+
+    /**
+     * Sends a request to the server and waits for its answer.
+     *
+     * @param socket Path of the server socket.
+     * @param file The file to validate, or "-" to send the source from stdin.
+     * @return The codes returned by the server, in order.
+     * @throws IOException If the server cannot be reached or answers with something other than codes.
+     */
+    public static List<Integer> request(String socket, String file) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            OutputStream out = Channels.newOutputStream(channel);
+            if (file.equals(Sjavac.STDIN)) {
+                byte[] source = System.in.readAllBytes();
+                out.write((SjavacServer.SOURCE_REQUEST + source.length + "\n").getBytes(StandardCharsets.UTF_8));
+                out.write(source);
+            } else {
+                String path = Paths.get(file).toAbsolutePath().toString();
+                out.write((SjavacServer.PATH_REQUEST + path + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+
+            InputStream in = Channels.newInputStream(channel);
+            String response = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+            List<Integer> codes = new ArrayList<>();
+            try {
+                for (String line : response.split(LINE_BREAK)) codes.add(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Unexpected response from server: " + response);
+            }
+            return codes;
+        }
+    }
+
+    /**
+     * Runs client mode.
+     *
+     * @param args {@value #CLIENT_FLAG}, the socket path and the file (or "-").
+     */
+    public static void main(String[] args) {
+        final String USAGE = "Usage: Sjavac " + CLIENT_FLAG + " <socket path> (file | -)";
+        if (args.length != ARGUMENTS) {
+            System.err.println(USAGE);
+            return;
+        }
+        List<Integer> codes;
+        try {
+            codes = request(args[SOCKET_INDEX], args[FILE_INDEX]);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            codes = List.of(Sjavac.IO_ERROR);
+        }
+        for (int code : codes) {
+            System.out.println(code);
+        }
+    }
+}
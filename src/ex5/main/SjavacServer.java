@@ -0,0 +1,212 @@
+package ex5.main;
+
+import ex5.exceptions.FileException;
+import ex5.parsing.FileProcessor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-running validation server that keeps one JVM (and its JIT-compiled validators) warm and serves
+ * requests over a Unix domain socket. Requests are served concurrently on a fixed pool of threads, and the
+ * latency of every request is reported on stderr.
+ * <p>
+ * Each connection carries one request, made of a header line and, for sources, the source bytes:
+ * <pre>
+ * PATH &lt;absolute path&gt;\n
+ * SOURCE &lt;number of bytes&gt;\n&lt;UTF-8 source&gt;
+ * </pre>
+ * The server answers with the lines {@link Sjavac} prints for the source: the code of the first pass, then
+ * the code of the second pass, each 0 for legal code or 1 for invalid code. When there is no verdict, because
+ * the file cannot be read, the request is malformed or the validator crashes, it answers with a single line
+ * holding 2 (IO_ERROR), the code {@link Sjavac} prints when its input cannot be read.
+ * Any Unix socket tool can be a client, e.g. {@code printf 'PATH %s\n' "$PWD/a.sjava" | nc -U sock};
+ * {@link SjavacClient} is a ready-made one.
+ * <p>
+ * Usage: Sjavac --server &lt;socket path&gt; [--threads N]
+ * @author Tomer Zilberman
+ */
+public class SjavacServer {
+    /** The flag that selects server mode in {@link Sjavac#main(String[])}. */
+    public static final String SERVER_FLAG = "--server";
+
+    /** Header of a request that validates a file on the server's file system. */
+    static final String PATH_REQUEST = "PATH ";
+
+    /** Header of a request that sends the source text itself. */
+    static final String SOURCE_REQUEST = "SOURCE ";
+
+    private static final String THREADS_FLAG = "--threads";
+    private static final String INTERNAL_ERROR = "Internal error while validating ", LINE_BREAK = "\n";
+    private static final int HEADER_END = '\n', END_OF_STREAM = -1, MALFORMED = -1;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /** Where the socket file is created. */
+    private final Path socketPath;
+
+    /** The threads that serve requests. */
+    private final ExecutorService workers;
+
+    /**
+     * Constructs a server for the given socket.
+     *
+     * @param socketPath Path of the socket file to create.
+     * @param threads Number of requests served at the same time.
+     */
+    public SjavacServer(Path socketPath, int threads) {
+        this.socketPath = socketPath;
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Binds the socket and serves requests until the JVM exits. A stale socket file is replaced.
+     *
+     * @throws IOException If the socket cannot be bound.
+     */
+    public void serve() throws IOException {
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socketPath);
+                } catch (IOException ignored) {
+                    // The socket file is replaced on the next start anyway
+                }
+            }));
+            System.err.println("Listening on " + socketPath);
+            while (true) {
+                SocketChannel client = server.accept();
+                workers.execute(() -> handle(client));
+            }
+        }
+    }
+
+    /**
+     * Serves one request and reports its latency.
+     *
+     * @param channel The connection of the request.
+     */
+    private void handle(SocketChannel channel) {
+        long start = System.nanoTime();
+        String subject;
+        String answer;
+        try (InputStream in = Channels.newInputStream(channel);
+             OutputStream out = Channels.newOutputStream(channel)) {
+            String header = readHeader(in);
+            int length = sourceLength(header);
+            FileProcessor source = null;
+            if (header != null && header.startsWith(PATH_REQUEST)) {
+                subject = header.substring(PATH_REQUEST.length());
+                try {
+                    source = FileProcessor.open(subject);
+                } catch (FileException e) {
+                    // Answered as IO_ERROR below
+                }
+            } else if (length != MALFORMED) {
+                byte[] text = in.readNBytes(length);
+                subject = "<source, " + text.length + " bytes>";
+                if (text.length == length) source = FileProcessor.ofText(new String(text, StandardCharsets.UTF_8));
+            } else {
+                subject = "<malformed request>";
+            }
+            answer = source == null ? Sjavac.IO_ERROR + LINE_BREAK : validate(source, subject);
+            out.write(answer.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Request failed: " + e);
+            return;
+        }
+        System.err.printf("%s -> %s in %.3f ms%n", subject, answer.trim().replace(LINE_BREAK, " "),
+                (System.nanoTime() - start) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Runs both passes over a source, as {@link Sjavac#main(String[])} does.
+     *
+     * @param source The source to validate.
+     * @param subject What the request validates, for the log.
+     * @return The answer: the code of each pass on its own line, or IO_ERROR alone if the validator crashes.
+     */
+    private static String validate(FileProcessor source, String subject) {
+        try {
+            Sjavac compiler = new Sjavac(source);
+            int sweepCode = compiler.initialSweep();
+            return sweepCode + LINE_BREAK + compiler.compile() + LINE_BREAK;
+        } catch (RuntimeException e) {
+            // A crash has no verdict, and must not be taken for invalid code
+            System.err.println(INTERNAL_ERROR + subject + ": " + e);
+            return Sjavac.IO_ERROR + LINE_BREAK;
+        }
+    }
+
+    /**
+     * Reads the number of source bytes announced by the header of a {@value #SOURCE_REQUEST} request.
+     *
+     * @param header The header, or null.
+     * @return The number of bytes, or MALFORMED if the header is not a source request with a
+     * non-negative number.
+     */
+    private static int sourceLength(String header) {
+        if (header == null || !header.startsWith(SOURCE_REQUEST)) return MALFORMED;
+        try {
+            int length = Integer.parseInt(header.substring(SOURCE_REQUEST.length()).trim());
+            return length < 0 ? MALFORMED : length;
+        } catch (NumberFormatException e) {
+            return MALFORMED;
+        }
+    }
+
+    /**
+     * Reads the header line of a request.
+     *
+     * @return The header without its line break, or null if the connection closed first.
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != HEADER_END) {
+            if (b == END_OF_STREAM) return null;
+            header.write(b);
+        }
+        return header.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs server mode.
+     *
+     * @param args {@value #SERVER_FLAG}, the socket path, and optionally {@value #THREADS_FLAG} N.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        final String USAGE = "Usage: Sjavac " + SERVER_FLAG + " <socket path> [" + THREADS_FLAG + " N]";
+        String socket = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(SERVER_FLAG)) continue;
+            if (args[i].equals(THREADS_FLAG) && i + 1 < args.length) {
+                threads = BatchRunner.parseThreads(args[++i]);
+            } else {
+                socket = args[i];
+            }
+        }
+        if (socket == null || threads < 1) {
+            System.err.println(USAGE);
+            return;
+        }
+        new SjavacServer(Paths.get(socket), threads).serve();
+    }
+}
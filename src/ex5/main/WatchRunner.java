@@ -0,0 +1,281 @@
+package ex5.main;
+
+import ex5.exceptions.FileException;
+import ex5.parsing.FileProcessor;
+import ex5.validation.SymbolTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches s-Java sources and validates each one again as soon as it is saved. The directories of the sources
+ * are registered with a {@link WatchService}; the events of a burst, such as an editor writing a file in
+ * several steps or a checkout touching many files, are merged until the directories stay quiet for a short
+ * delay, and then every file that changed is validated once, however many events it had. Results are printed
+ * one per line, as "path code" like {@link BatchRunner}, with the first error of invalid files and the time
+ * taken on stderr. A file the validator crashes on is reported as IO_ERROR, as in {@link BatchRunner}, and the
+ * crash is logged to stderr.
+ * <p>
+ * The JVM stays up between saves, so the validators stay JIT-compiled from the first run over every source,
+ * and one {@link SymbolTable} is emptied and reused for every file instead of growing a new one.
+ * <p>
+ * Usage: Sjavac --watch [--debounce ms] (file | directory)...
+ * Directories are watched recursively for .sjava files, including directories created later. The delay
+ * defaults to {@value #DEFAULT_DEBOUNCE_MILLIS} ms. Runs until the JVM is stopped.
+ * @author Tomer Zilberman
+ */
+public class WatchRunner {
+    /** The flag that selects watch mode in {@link Sjavac#main(String[])}. */
+    public static final String WATCH_FLAG = "--watch";
+
+    private static final String DEBOUNCE_FLAG = "--debounce";
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+    private static final String SOURCE_SUFFIX = ".sjava";
+    private static final String INTERNAL_ERROR = "Internal error while validating ";
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final WatchService watcher;
+    private final long debounceMillis;
+
+    /** The directory of each registration, as it is printed. */
+    private final HashMap<WatchKey, Path> directories = new HashMap<>();
+
+    /** Directories whose every source is watched, with their subdirectories. */
+    private final HashSet<Path> trees = new HashSet<>();
+
+    /** Files watched on their own, in a directory that is not watched as a whole. */
+    private final HashSet<Path> files = new HashSet<>();
+
+    /** The files that changed since they were last validated, in the order they changed. */
+    private final LinkedHashSet<Path> queued = new LinkedHashSet<>();
+
+    /** The table every file is validated with. */
+    private final SymbolTable symbolTable = new SymbolTable();
+
+    /**
+     * Constructs a watcher that watches nothing yet.
+     *
+     * @param debounceMillis How long the directories must stay quiet before the changed files are validated.
+     * @throws IOException If the file system cannot be watched.
+     */
+    public WatchRunner(long debounceMillis) throws IOException {
+        this.watcher = Paths.get("").getFileSystem().newWatchService();
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Watches a file, or every source in a directory and its subdirectories, and queues the sources found.
+     *
+     * @param argument The file or directory.
+     * @throws IOException If a directory cannot be read or watched.
+     */
+    public void watch(String argument) throws IOException {
+        Path path = Paths.get(argument).normalize();
+        if (Files.isDirectory(path)) {
+            watchTree(path);
+        } else {
+            Path parent = path.getParent();
+            register(parent == null ? Paths.get("") : parent);
+            files.add(path);
+            queued.add(path);
+        }
+    }
+
+    /**
+     * Validates every queued file, then waits for changes and validates the changed files, until interrupted.
+     *
+     * @throws IOException If a new directory cannot be read or watched.
+     */
+    public void run() throws IOException {
+        validateQueued();
+        try {
+            while (!directories.isEmpty()) {
+                WatchKey key = watcher.take();
+                // Keep collecting until no event arrives for the debounce delay
+                do {
+                    collect(key);
+                    key = watcher.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                validateQueued();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Validates the queued files that still exist, in the order they changed, and empties the queue.
+     */
+    private void validateQueued() {
+        if (queued.isEmpty()) return;
+        long start = System.nanoTime();
+        int validated = 0;
+        for (Path path : queued) {
+            if (!Files.isRegularFile(path)) continue;
+            validate(path.toString());
+            validated++;
+        }
+        queued.clear();
+        if (validated == 0) return;
+        System.out.flush();
+        System.err.printf("%d files in %.1f ms%n", validated, (System.nanoTime() - start) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Validates a file with the shared symbol table and prints its verdict.
+     *
+     * @param path The file.
+     */
+    private void validate(String path) {
+        int code;
+        String error = null;
+        symbolTable.clear();
+        try {
+            Sjavac compiler = new Sjavac(FileProcessor.open(path), symbolTable);
+            code = compiler.validate();
+            error = compiler.getErrorMessage();
+        } catch (FileException | UncheckedIOException e) {
+            code = Sjavac.IO_ERROR;
+        } catch (RuntimeException e) {
+            // A crash on one file must not stop the watch, and has no verdict, as in BatchRunner
+            System.err.println(INTERNAL_ERROR + path + ": " + e);
+            code = Sjavac.IO_ERROR;
+        }
+        System.out.println(path + " " + code);
+        if (code == Sjavac.INVALID_CODE && error != null) System.err.println(path + ": " + error);
+    }
+
+    /**
+     * Queues the changes reported by a key and renews the key. New directories inside a watched tree are
+     * watched too, and their sources queued.
+     */
+    private void collect(WatchKey key) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost: anything in the directory may have changed
+                queueDirectory(directory);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (isInTree(directory) && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(path)) {
+                watchTree(path);
+            } else if (isWatched(directory, path)) {
+                queued.add(path);
+            }
+        }
+        if (!key.reset()) directories.remove(key);
+    }
+
+    /**
+     * Watches a directory and its subdirectories, and queues their sources.
+     */
+    private void watchTree(Path root) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted().forEach(found::add);
+        }
+        for (Path path : found) {
+            if (Files.isDirectory(path)) {
+                register(path);
+                trees.add(path);
+            } else if (isSource(path)) {
+                queued.add(path);
+            }
+        }
+    }
+
+    /**
+     * Queues every watched file in a directory.
+     */
+    private void queueDirectory(Path directory) throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            list.sorted().filter(path -> isWatched(directory, path)).forEach(queued::add);
+        }
+    }
+
+    /**
+     * Registers a directory for creations, changes and deletions of its entries.
+     */
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.toAbsolutePath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, directory);
+    }
+
+    /**
+     * @return True if a path of a watched directory is a file to validate when it changes.
+     */
+    private boolean isWatched(Path directory, Path path) {
+        return isInTree(directory) ? isSource(path) : files.contains(path);
+    }
+
+    private boolean isInTree(Path directory) {
+        return trees.contains(directory);
+    }
+
+    private static boolean isSource(Path path) {
+        return path.toString().endsWith(SOURCE_SUFFIX) && !Files.isDirectory(path);
+    }
+
+    /**
+     * Reads the debounce delay given on the command line.
+     *
+     * @param value The value of {@value #DEBOUNCE_FLAG}.
+     * @return The delay in milliseconds, or -1 if the value is not a number.
+     */
+    private static long parseDebounce(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Runs watch mode.
+     *
+     * @param args {@value #WATCH_FLAG}, optionally {@value #DEBOUNCE_FLAG} ms, then files and directories.
+     * @throws IOException If a directory cannot be read or watched.
+     */
+    public static void main(String[] args) throws IOException {
+        final String USAGE = "Usage: Sjavac " + WATCH_FLAG + " [" + DEBOUNCE_FLAG + " ms] (file|dir)...";
+        long debounce = DEFAULT_DEBOUNCE_MILLIS;
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(WATCH_FLAG)) continue;
+            if (args[i].equals(DEBOUNCE_FLAG) && i + 1 < args.length) {
+                debounce = parseDebounce(args[++i]);
+            } else {
+                arguments.add(args[i]);
+            }
+        }
+        if (arguments.isEmpty() || debounce < 0) {
+            System.err.println(USAGE);
+            return;
+        }
+
+        WatchRunner runner = new WatchRunner(debounce);
+        for (String argument : arguments) {
+            runner.watch(argument);
+        }
+        runner.run();
+    }
+}
@@ -2,56 +2,153 @@ package ex5.parsing;
 
 import ex5.exceptions.FileException;
 
-import java.io.FileInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.util.Scanner;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * The FileProcessor class provides functionality to process and read lines from a file.
- * It uses a Scanner for reading the file line by line and allows resetting the file reading process.
+ * The FileProcessor class provides functionality to read the lines of a source file one by one.
+ * Two implementations exist for files: {@link ScannerFileProcessor}, which reads through a Scanner, and
+ * {@link MappedFileProcessor}, which memory-maps the file and hands out lines as views without copying.
+ * Use {@link #open(String)} to get the implementation that suits the file. Sources that are not files are
+ * read with {@link #ofText(CharSequence)}, {@link #ofReader(Reader)} or {@link #ofStream(InputStream)}.
  * @author Tomer Zilberman
  */
-public class FileProcessor {
-    private InputStream inputStream; // The input stream for the file
-    private Scanner scanner;        // Scanner object used for reading the file
-    private String filename;        // Name of the file being processed
+public abstract class FileProcessor implements Closeable {
 
     /**
-     * Constructs a FileProcessor for the specified file.
+     * System property that forces the backend: "true" always memory-maps, "false" always uses a Scanner.
+     * When unset, files of at least {@link #MAPPED_THRESHOLD} bytes are memory-mapped.
+     */
+    public static final String MAPPED_PROPERTY = "sjavac.mmap";
+
+    /** Size in bytes from which files are memory-mapped by default. */
+    public static final long MAPPED_THRESHOLD = 1 << 20;
+
+    /** Amount of source read by all processors, see {@link #getBytesRead()}. */
+    private static final LongAdder bytesRead = new LongAdder();
+
+    /**
+     * Opens a file with the backend selected by {@link #MAPPED_PROPERTY} or by the file size.
+     * Files are only memory-mapped when the default charset is ASCII compatible, since the
+     * mapped backend reads ASCII lines directly from the bytes.
      *
      * @param fileName the name of the file to process
-     * @throws FileException if the file cannot be found
-     */
-    public FileProcessor(String fileName) throws FileException {
-        final String FILE_ERROR_MESSAGE = "File: " + fileName + " did not open";
-        this.filename = fileName;
-        try {
-            inputStream = new FileInputStream(fileName);
-        } catch (FileNotFoundException e) {
-            throw new FileException(FILE_ERROR_MESSAGE);
+     * @return a FileProcessor positioned at the first line of the file
+     * @throws FileException if the file cannot be opened
+     */
+    public static FileProcessor open(String fileName) throws FileException {
+        String flag = System.getProperty(MAPPED_PROPERTY);
+        long size = new File(fileName).length();
+        boolean mapped = flag != null ? Boolean.parseBoolean(flag) : size >= MAPPED_THRESHOLD;
+        if (mapped && size <= Integer.MAX_VALUE && isAsciiCompatible(Charset.defaultCharset())) {
+            return new MappedFileProcessor(fileName);
         }
-        scanner = new Scanner(inputStream); // Initialize the Scanner with the input stream.
+        return new ScannerFileProcessor(fileName);
     }
 
     /**
-     * Reads the next line from the file.
+     * Creates a FileProcessor over source text that is already in memory.
      *
-     * @return the next line from the file, or null if no more lines are available
+     * @param text the source text
+     * @return a FileProcessor positioned at the first line of the text
      */
-    public String readLine() {
-        if (scanner.hasNextLine()) {
-            return scanner.nextLine(); // Return the next line if available.
-        }
-        return null; // Return null if no more lines are present.
+    public static FileProcessor ofText(CharSequence text) {
+        return new TextFileProcessor(text);
+    }
+
+    /**
+     * Creates a FileProcessor that reads source text from a stream of characters as it arrives.
+     *
+     * @param reader the stream to read; closed when the processor is closed
+     * @return a FileProcessor positioned at the first line of the stream
+     */
+    public static FileProcessor ofReader(Reader reader) {
+        return new ReaderFileProcessor(reader);
+    }
+
+    /**
+     * Creates a FileProcessor that reads source text from a stream of bytes as it arrives, decoding it
+     * with the default charset, the same way a file is decoded.
+     *
+     * @param stream the stream to read, e.g. System.in; closed when the processor is closed
+     * @return a FileProcessor positioned at the first line of the stream
+     */
+    public static FileProcessor ofStream(InputStream stream) {
+        return new ReaderFileProcessor(new InputStreamReader(stream, Charset.defaultCharset()));
     }
 
     /**
-     * Resets the file reading process by reinitializing the Scanner object.
+     * @return The amount of source read by all processors since startup, line terminators included: bytes
+     *         for memory-mapped files, and characters for the other backends.
+     */
+    public static long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Adds to the amount of source read, see {@link #getBytesRead()}.
+     *
+     * @param amount The amount read.
+     */
+    static void addBytesRead(long amount) {
+        bytesRead.add(amount);
+    }
+
+    /**
+     * @return The name of the file read, or null if the source is not a file.
+     */
+    public String getName() {
+        return null;
+    }
+
+    /**
+     * Reads the next line from the file, without its line terminator.
+     *
+     * @return the next line from the file, or null if no more lines are available
+     */
+    public abstract CharSequence readLine();
+
+    /**
+     * Restarts reading from the first line of the file.
      *
      * @throws FileNotFoundException if the file cannot be reopened
+     * @throws UnsupportedOperationException if the source is a stream, which can only be read once
+     */
+    public abstract void reset() throws FileNotFoundException;
+
+    /**
+     * Releases the file. Lines read before closing stay readable.
+     */
+    @Override
+    public abstract void close();
+
+    /**
+     * Removes leading and trailing characters up to ' ', exactly like {@link String#trim()},
+     * but without copying when the line is a view.
+     *
+     * @param line the line to trim
+     * @return the trimmed line
+     */
+    public static CharSequence trim(CharSequence line) {
+        if (line instanceof String) return ((String) line).trim();
+        int start = 0, end = line.length();
+        while (start < end && line.charAt(start) <= ' ') start++;
+        while (end > start && line.charAt(end - 1) <= ' ') end--;
+        return (start == 0 && end == line.length()) ? line : line.subSequence(start, end);
+    }
+
+    /**
+     * Checks whether a charset decodes the bytes 0-127 to the same ASCII characters.
      */
-    public void reset() throws FileNotFoundException {
-        scanner = new Scanner(new FileInputStream(filename));
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) ||
+                charset.equals(StandardCharsets.ISO_8859_1);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,397 @@
+package ex5.parsing;
+
+/**
+ * A hand-written, single-pass classifier that sorts a line of s-Java code into its {@link LineKind} bucket.
+ * It accepts and rejects exactly the same lines as the line-level patterns of {@link RegexUtils}, but reads
+ * the line once: the bucket is narrowed down by the last character and the leading keyword, and only the
+ * matching recognizer is run. Variable declarations and assignments are recognized by simulating the
+ * corresponding regular expression as a small set of states, so the cost is linear in the line length.
+ * @author Tomer Zilberman
+ */
+public class LineClassifier {
+
+    /* States of the declaration/assignment automaton, kept as bits of an int. */
+    /** Expecting the start of a variable name (after a type or a comma). Whitespace is allowed. */
+    private static final int ITEM_START = 1;
+    /** Inside a variable name. */
+    private static final int NAME = 1 << 1;
+    /** After a variable name, before '=', ',' or ';'. */
+    private static final int AFTER_NAME = 1 << 2;
+    /** After '=', expecting the start of a value. */
+    private static final int VALUE_START = 1 << 3;
+    /** Inside a value that is a variable name or true/false. */
+    private static final int VALUE_NAME = 1 << 4;
+    /** Inside a number, after its sign. */
+    private static final int NUMBER_SIGN = 1 << 5;
+    /** Inside a number, only digits so far. */
+    private static final int NUMBER_INTEGER = 1 << 6;
+    /** Inside a number, a dot with no digits before it. */
+    private static final int NUMBER_DOT = 1 << 7;
+    /** Inside a number, digits followed by a dot. */
+    private static final int NUMBER_INTEGER_DOT = 1 << 8;
+    /** Inside a number, digits after a dot. */
+    private static final int NUMBER_FRACTION = 1 << 9;
+    /** Inside a string literal. */
+    private static final int STRING = 1 << 10;
+    /** After the opening quote of a char literal. */
+    private static final int CHAR_OPEN = 1 << 11;
+    /** After the character of a char literal. */
+    private static final int CHAR_BODY = 1 << 12;
+    /** After a complete value, before ',' or ';'. */
+    private static final int AFTER_VALUE = 1 << 13;
+    /** After the final semicolon. */
+    private static final int ACCEPT = 1 << 14;
+
+    /** States in which a value is complete and may be followed by whitespace, ',' or ';'. */
+    private static final int VALUE_END = VALUE_NAME | NUMBER_INTEGER | NUMBER_INTEGER_DOT |
+            NUMBER_FRACTION | AFTER_VALUE;
+
+    private static final String FINAL = "final", VOID = "void", IF = "if", WHILE = "while",
+            RETURN = "return";
+    private static final String[] PRIMITIVE_TYPES = {"int", "double", "boolean", "String", "char"};
+    private static final char SEMICOLON = ';', OPEN_BLOCK = '{', CLOSE_BLOCK = '}',
+            OPEN_BRACKET = '(', CLOSE_BRACKET = ')', COMMENT = '/';
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * Classifies a line into its bucket.
+     *
+     * @param line The line to classify, usually trimmed.
+     * @return The bucket of the line, or {@link LineKind#INVALID} if it belongs to none.
+     */
+    public static LineKind classify(CharSequence line) {
+        int length = line.length();
+        if (length == 0) return LineKind.EMPTY;
+
+        switch (line.charAt(length - 1)) {
+            case SEMICOLON:
+                if (isReturnStatement(line)) return LineKind.RETURN;
+                if (isVariableDeclaration(line)) return LineKind.VARIABLE_DECLARATION;
+                if (isVariableValueChange(line)) return LineKind.VARIABLE_VALUE_CHANGE;
+                if (isMethodCall(line)) return LineKind.METHOD_CALL;
+                break;
+            case OPEN_BLOCK:
+                if (isMethodDeclaration(line)) return LineKind.METHOD_DECLARATION;
+                if (isIfWhileBlock(line)) return LineKind.IF_WHILE_BLOCK;
+                break;
+            case CLOSE_BLOCK:
+                if (length == 1) return LineKind.CLOSING_SCOPE;
+                break;
+            default:
+                break;
+        }
+        if (isComment(line)) return LineKind.COMMENT;
+        if (isEmpty(line)) return LineKind.EMPTY;
+        return LineKind.INVALID;
+    }
+
+    /**
+     * Checks whether a line matches the line-level pattern of a bucket, running only the recognizer of
+     * that bucket. Unlike {@link #classify(CharSequence)}, the line need not be trimmed, and it may match
+     * the patterns of several buckets.
+     *
+     * @param line The line to check.
+     * @param kind The bucket; {@link LineKind#INVALID} matches no line.
+     * @return True if the line matches the pattern of the bucket, false otherwise.
+     */
+    public static boolean matches(CharSequence line, LineKind kind) {
+        if (line.length() == 0) return kind == LineKind.EMPTY;
+        switch (kind) {
+            case EMPTY:
+                return isEmpty(line);
+            case COMMENT:
+                return isComment(line);
+            case RETURN:
+                return isReturnStatement(line);
+            case CLOSING_SCOPE:
+                return line.length() == 1 && line.charAt(0) == CLOSE_BLOCK;
+            case VARIABLE_DECLARATION:
+                return isVariableDeclaration(line);
+            case METHOD_DECLARATION:
+                return isMethodDeclaration(line);
+            case IF_WHILE_BLOCK:
+                return isIfWhileBlock(line);
+            case VARIABLE_VALUE_CHANGE:
+                return isVariableValueChange(line);
+            case METHOD_CALL:
+                return isMethodCall(line);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if a line is a comment or empty, the same as {@link RegexUtils#isCommentOrEmpty(String)}.
+     *
+     * @param line Line to check.
+     * @return True if comment or empty, false otherwise.
+     */
+    public static boolean isCommentOrEmpty(CharSequence line) {
+        return isComment(line) || isEmpty(line);
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#SINGLE_LINE_COMMENT}.
+     */
+    private static boolean isComment(CharSequence line) {
+        int length = line.length();
+        if (length < 2 || line.charAt(0) != COMMENT || line.charAt(1) != COMMENT) return false;
+        return noLineTerminators(line, 2, length);
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#EMPTY_LINE}.
+     */
+    private static boolean isEmpty(CharSequence line) {
+        return skipSpaces(line, 0, line.length()) == line.length();
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#RETURN_STATEMENT}.
+     */
+    private static boolean isReturnStatement(CharSequence line) {
+        int length = line.length();
+        return startsWith(line, 0, RETURN) &&
+                skipSpaces(line, RETURN.length(), length) == length - 1 &&
+                line.charAt(length - 1) == SEMICOLON;
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#METHOD_CALL_ONLY}.
+     */
+    private static boolean isMethodCall(CharSequence line) {
+        int nameEnd = skipName(line, 0);
+        if (nameEnd == NOT_FOUND) return false;
+        return isBracketedTail(line, skipSpaces(line, nameEnd, line.length()), SEMICOLON, false);
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#METHOD_DECLARATION_ONLY}.
+     */
+    private static boolean isMethodDeclaration(CharSequence line) {
+        if (!startsWith(line, 0, VOID)) return false;
+        int nameStart = skipSpaces(line, VOID.length(), line.length());
+        if (nameStart == VOID.length()) return false;
+        int nameEnd = skipName(line, nameStart);
+        if (nameEnd == NOT_FOUND) return false;
+        return isBracketedTail(line, skipSpaces(line, nameEnd, line.length()), OPEN_BLOCK, false);
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#IF_WHILE_BLOCK}.
+     */
+    private static boolean isIfWhileBlock(CharSequence line) {
+        int keywordEnd;
+        if (startsWith(line, 0, IF)) {
+            keywordEnd = IF.length();
+        } else if (startsWith(line, 0, WHILE)) {
+            keywordEnd = WHILE.length();
+        } else {
+            return false;
+        }
+        return isBracketedTail(line, skipSpaces(line, keywordEnd, line.length()), OPEN_BLOCK, true);
+    }
+
+    /**
+     * Checks that the line continues from the given index with "\(.*\)\s*" followed by the given
+     * last character (or "\(.+\)\s*" if the brackets must not be empty).
+     *
+     * @param line The line.
+     * @param index Index where the opening bracket is expected.
+     * @param last The expected last character of the line.
+     * @param nonEmpty Whether at least one character is required between the brackets.
+     * @return True if the rest of the line matches.
+     */
+    private static boolean isBracketedTail(CharSequence line, int index, char last, boolean nonEmpty) {
+        int length = line.length();
+        if (index >= length || line.charAt(index) != OPEN_BRACKET || line.charAt(length - 1) != last) {
+            return false;
+        }
+        int close = length - 2;
+        while (close > index && isSpace(line.charAt(close))) close--;
+        if (close <= index || line.charAt(close) != CLOSE_BRACKET) return false;
+        if (nonEmpty && close == index + 1) return false;
+        return noLineTerminators(line, index + 1, close);
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#VARIABLE_DECLARATION}.
+     */
+    private static boolean isVariableDeclaration(CharSequence line) {
+        int length = line.length();
+        int index = 0;
+        if (startsWith(line, 0, FINAL)) {
+            index = skipSpaces(line, FINAL.length(), length);
+        }
+        int typeEnd = NOT_FOUND;
+        for (String type : PRIMITIVE_TYPES) {
+            if (startsWith(line, index, type)) {
+                typeEnd = index + type.length();
+                break;
+            }
+        }
+        if (typeEnd == NOT_FOUND || typeEnd >= length || !isSpace(line.charAt(typeEnd))) return false;
+        return runAutomaton(line, typeEnd, ITEM_START, true);
+    }
+
+    /**
+     * Equivalent to {@link RegexUtils#VARIABLE_VALUE_CHANGE}.
+     */
+    private static boolean isVariableValueChange(CharSequence line) {
+        if (!isNameStart(line.charAt(0))) return false;
+        return runAutomaton(line, 1, NAME, false);
+    }
+
+    /**
+     * Runs the declaration/assignment automaton over the line, starting at the given index and state.
+     *
+     * @param line The line.
+     * @param start Index of the first character to read.
+     * @param initialState The state before reading the first character.
+     * @param allowList Whether several comma separated variables and variables without values are
+     *                  allowed (declarations), or exactly one assignment (value changes).
+     * @return True if the automaton accepts the rest of the line.
+     */
+    private static boolean runAutomaton(CharSequence line, int start, int initialState, boolean allowList) {
+        int length = line.length();
+        int states = initialState;
+        for (int i = start; i < length && states != 0; i++) {
+            states = step(states, line.charAt(i), allowList);
+        }
+        return (states & ACCEPT) != 0;
+    }
+
+    /**
+     * Advances every active state of the automaton over one character.
+     *
+     * @param states The active states.
+     * @param c The character read.
+     * @param allowList See {@link #runAutomaton(CharSequence, int, int, boolean)}.
+     * @return The states active after reading the character.
+     */
+    private static int step(int states, char c, boolean allowList) {
+        int next = 0;
+        boolean space = isSpace(c);
+        boolean nameStart = isNameStart(c);
+        boolean namePart = nameStart || isDigit(c);
+        boolean digit = isDigit(c);
+
+        if ((states & ITEM_START) != 0) {
+            if (space) next |= ITEM_START;
+            if (nameStart) next |= NAME;
+        }
+        if ((states & NAME) != 0) {
+            if (namePart) next |= NAME;
+            next |= afterName(c, space, allowList);
+        }
+        if ((states & AFTER_NAME) != 0) {
+            next |= afterName(c, space, allowList);
+        }
+        if ((states & VALUE_START) != 0) {
+            if (space) next |= VALUE_START;
+            if (nameStart) next |= VALUE_NAME;
+            if (digit) next |= NUMBER_INTEGER;
+            if (c == '-' || c == '+') next |= NUMBER_SIGN;
+            if (c == '.') next |= NUMBER_DOT;
+            if (c == '"') next |= STRING;
+            if (c == '\'') next |= CHAR_OPEN;
+        }
+        if ((states & VALUE_NAME) != 0 && namePart) next |= VALUE_NAME;
+        if ((states & NUMBER_SIGN) != 0) {
+            if (digit) next |= NUMBER_INTEGER;
+            if (c == '.') next |= NUMBER_DOT;
+        }
+        if ((states & NUMBER_INTEGER) != 0) {
+            if (digit) next |= NUMBER_INTEGER;
+            if (c == '.') next |= NUMBER_INTEGER_DOT;
+        }
+        if ((states & (NUMBER_DOT | NUMBER_INTEGER_DOT | NUMBER_FRACTION)) != 0 && digit) {
+            next |= NUMBER_FRACTION;
+        }
+        if ((states & STRING) != 0 && !isLineTerminator(c)) {
+            next |= STRING;
+            if (c == '"') next |= AFTER_VALUE;
+        }
+        if ((states & CHAR_OPEN) != 0 && !isLineTerminator(c)) next |= CHAR_BODY;
+        if ((states & CHAR_BODY) != 0 && c == '\'') next |= AFTER_VALUE;
+        if ((states & VALUE_END) != 0) {
+            if (space) next |= AFTER_VALUE;
+            if (c == ',' && allowList) next |= ITEM_START;
+            if (c == SEMICOLON) next |= ACCEPT;
+        }
+        return next;
+    }
+
+    /**
+     * Transitions out of a complete variable name.
+     */
+    private static int afterName(char c, boolean space, boolean allowList) {
+        if (space) return AFTER_NAME;
+        if (c == '=') return VALUE_START;
+        if (allowList && c == ',') return ITEM_START;
+        if (allowList && c == SEMICOLON) return ACCEPT;
+        return 0;
+    }
+
+    /**
+     * Skips a name matching {@link RegexUtils#VARIABLE_NAME} that starts at the given index.
+     *
+     * @return The index right after the name, or NOT_FOUND if no name starts at the index.
+     */
+    private static int skipName(CharSequence line, int index) {
+        int length = line.length();
+        if (index >= length || !isNameStart(line.charAt(index))) return NOT_FOUND;
+        index++;
+        while (index < length && (isNameStart(line.charAt(index)) || isDigit(line.charAt(index)))) index++;
+        return index;
+    }
+
+    /**
+     * Skips whitespace (as matched by "\s") from the given index up to the given end.
+     *
+     * @return The index of the first non-whitespace character, or end.
+     */
+    private static int skipSpaces(CharSequence line, int index, int end) {
+        while (index < end && isSpace(line.charAt(index))) index++;
+        return index;
+    }
+
+    private static boolean startsWith(CharSequence line, int index, String prefix) {
+        int end = index + prefix.length();
+        if (end > line.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(index + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the given range could be matched by ".*".
+     */
+    private static boolean noLineTerminators(CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isLineTerminator(line.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /** Characters matched by "\s". */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Characters not matched by ".". */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /** Characters matched by "\d". */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Characters matched by "[a-zA-Z_]". */
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
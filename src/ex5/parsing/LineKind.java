@@ -0,0 +1,38 @@
+package ex5.parsing;
+
+/**
+ * The "buckets" a trimmed line of s-Java code can belong to.
+ * Each bucket corresponds to one of the line-level patterns in {@link RegexUtils}.
+ * @author Tomer Zilberman
+ */
+public enum LineKind {
+    /** A line containing only whitespace. See {@link RegexUtils#EMPTY_LINE}. */
+    EMPTY,
+
+    /** A single-line comment. See {@link RegexUtils#SINGLE_LINE_COMMENT}. */
+    COMMENT,
+
+    /** A return statement. See {@link RegexUtils#RETURN_STATEMENT}. */
+    RETURN,
+
+    /** A single closing curly brace. See {@link RegexUtils#CLOSING_SCOPE}. */
+    CLOSING_SCOPE,
+
+    /** A variable declaration. See {@link RegexUtils#VARIABLE_DECLARATION}. */
+    VARIABLE_DECLARATION,
+
+    /** A method declaration. See {@link RegexUtils#METHOD_DECLARATION_ONLY}. */
+    METHOD_DECLARATION,
+
+    /** An if/while block opening. See {@link RegexUtils#IF_WHILE_BLOCK}. */
+    IF_WHILE_BLOCK,
+
+    /** An assignment to an existing variable. See {@link RegexUtils#VARIABLE_VALUE_CHANGE}. */
+    VARIABLE_VALUE_CHANGE,
+
+    /** A method call. See {@link RegexUtils#METHOD_CALL_ONLY}. */
+    METHOD_CALL,
+
+    /** A line that belongs to none of the buckets above. */
+    INVALID
+}
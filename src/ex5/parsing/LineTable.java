@@ -0,0 +1,85 @@
+package ex5.parsing;
+
+import java.util.Arrays;
+
+/**
+ * A compact table of the code lines of a source file, filled during the first pass so the second pass
+ * can run without reading the file again. Comments and empty lines are not stored. Each entry holds the
+ * trimmed text of the line, its {@link LineKind} and its original (1-based) line number, kept in parallel arrays.
+ * @author Tomer Zilberman
+ */
+public class LineTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The trimmed text of each line. */
+    private String[] lines;
+
+    /** The bucket of each line. */
+    private LineKind[] kinds;
+
+    /** The original line number of each line in the source file. */
+    private int[] lineNumbers;
+
+    /** Number of entries in the table. */
+    private int size;
+
+    /**
+     * Constructs an empty LineTable.
+     */
+    public LineTable() {
+        lines = new String[INITIAL_CAPACITY];
+        kinds = new LineKind[INITIAL_CAPACITY];
+        lineNumbers = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Appends a line to the table.
+     *
+     * @param line The trimmed text of the line.
+     * @param kind The bucket of the line.
+     * @param lineNumber The original line number of the line.
+     */
+    public void add(String line, LineKind kind, int lineNumber) {
+        if (size == lines.length) {
+            int capacity = size * 2;
+            lines = Arrays.copyOf(lines, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        }
+        lines[size] = line;
+        kinds[size] = kind;
+        lineNumbers[size] = lineNumber;
+        size++;
+    }
+
+    /**
+     * @return The number of lines in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index Index of the entry.
+     * @return The trimmed text of the line.
+     */
+    public String getLine(int index) {
+        return lines[index];
+    }
+
+    /**
+     * @param index Index of the entry.
+     * @return The bucket of the line.
+     */
+    public LineKind getKind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * @param index Index of the entry.
+     * @return The original line number of the line.
+     */
+    public int getLineNumber(int index) {
+        return lineNumbers[index];
+    }
+}
@@ -0,0 +1,227 @@
+package ex5.parsing;
+
+/**
+ * A deterministic automaton that reads a literal once and tells which of the literal patterns of
+ * {@link RegexUtils} it matches: {@link RegexUtils#INTEGER_ONLY}, {@link RegexUtils#DOUBLE_ONLY},
+ * {@link RegexUtils#BOOLEAN_ONLY}, {@link RegexUtils#STRING_ONLY} and {@link RegexUtils#CHAR_ONLY}. The result
+ * is a bitmask with the bit {@code 1 << type.getId()} set for the type of every pattern matched, so an int
+ * literal such as "-5" has both its int and double bits set. A mask is checked against an expected type with
+ * {@link #isAcceptedBy(SType, int)}, which also counts the types the expected type accepts: an int literal
+ * can be assigned to a double or used as a boolean.
+ * @author Tomer Zilberman
+ */
+public final class LiteralClassifier {
+
+    /** The mask of a value that is not a literal. */
+    public static final int NONE = 0;
+
+    private static final String TRUE = "true", FALSE = "false";
+
+    /* Character classes of the automaton. */
+    private static final int OTHER = 0, DIGIT = 1, MINUS = 2, PLUS = 3, DOT = 4, DOUBLE_QUOTE = 5,
+            SINGLE_QUOTE = 6, LINE_TERMINATOR = 7, LETTER_T = 8, LETTER_R = 9, LETTER_U = 10, LETTER_E = 11,
+            LETTER_F = 12, LETTER_A = 13, LETTER_L = 14, LETTER_S = 15, CLASSES = 16;
+
+    /* States of the automaton. */
+    /** No character may follow: the input is not a literal. */
+    private static final int DEAD = 0;
+    /** Nothing read yet. */
+    private static final int START = 1;
+    /** After a minus sign. */
+    private static final int NUMBER_MINUS = 2;
+    /** After a plus sign. */
+    private static final int NUMBER_PLUS = 3;
+    /** Digits, with an optional minus sign before them: an int, and so a double. */
+    private static final int NUMBER_INTEGER = 4;
+    /** Digits after a plus sign: a double only, since an int has no plus sign. */
+    private static final int NUMBER_PLUS_INTEGER = 5;
+    /** Digits followed by a dot. */
+    private static final int NUMBER_INTEGER_DOT = 6;
+    /** A dot with no digits before it. */
+    private static final int NUMBER_DOT = 7;
+    /** Digits after a dot. */
+    private static final int NUMBER_FRACTION = 8;
+    /** Inside a string literal, after its opening quote or any character but a quote. */
+    private static final int STRING = 9;
+    /** Inside a string literal, after a quote that may be the closing one. */
+    private static final int STRING_QUOTE = 10;
+    /** After the opening quote of a char literal. */
+    private static final int CHAR_OPEN = 11;
+    /** After the character of a char literal. */
+    private static final int CHAR_BODY = 12;
+    /** After the closing quote of a char literal. */
+    private static final int CHAR_CLOSE = 13;
+    /** The first state of the letters of "true"; the n-th letter read leads to TRUE_PREFIX + n - 1. */
+    private static final int TRUE_PREFIX = 14;
+    /** The first state of the letters of "false". */
+    private static final int FALSE_PREFIX = TRUE_PREFIX + TRUE.length();
+    private static final int STATES = FALSE_PREFIX + FALSE.length();
+
+    private static final int ASCII = 128;
+    private static final char NEXT_LINE = '\u0085', LINE_SEPARATOR = '\u2028', PARAGRAPH_SEPARATOR = '\u2029';
+
+    /** NEXT[state * CLASSES + class] is the state after reading a character of the class in the state. */
+    private static final byte[] NEXT = new byte[STATES * CLASSES];
+
+    /** The mask of the literal read when the input ends in each state. */
+    private static final int[] MASKS = new int[STATES];
+
+    /** The class of each ASCII character. */
+    private static final byte[] ASCII_CLASSES = new byte[ASCII];
+
+    /** ACCEPTED[type id] is the mask of the literal types that type accepts. */
+    private static final int[] ACCEPTED = new int[SType.values().length];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) ASCII_CLASSES[c] = DIGIT;
+        ASCII_CLASSES['-'] = MINUS;
+        ASCII_CLASSES['+'] = PLUS;
+        ASCII_CLASSES['.'] = DOT;
+        ASCII_CLASSES['"'] = DOUBLE_QUOTE;
+        ASCII_CLASSES['\''] = SINGLE_QUOTE;
+        ASCII_CLASSES['\n'] = LINE_TERMINATOR;
+        ASCII_CLASSES['\r'] = LINE_TERMINATOR;
+        ASCII_CLASSES['t'] = LETTER_T;
+        ASCII_CLASSES['r'] = LETTER_R;
+        ASCII_CLASSES['u'] = LETTER_U;
+        ASCII_CLASSES['e'] = LETTER_E;
+        ASCII_CLASSES['f'] = LETTER_F;
+        ASCII_CLASSES['a'] = LETTER_A;
+        ASCII_CLASSES['l'] = LETTER_L;
+        ASCII_CLASSES['s'] = LETTER_S;
+
+        // Numbers: [-+]?(\d+(\.\d*)?|\.\d+), where only -?\d+ is an int
+        on(START, DIGIT, NUMBER_INTEGER);
+        on(START, MINUS, NUMBER_MINUS);
+        on(START, PLUS, NUMBER_PLUS);
+        on(START, DOT, NUMBER_DOT);
+        on(NUMBER_MINUS, DIGIT, NUMBER_INTEGER);
+        on(NUMBER_MINUS, DOT, NUMBER_DOT);
+        on(NUMBER_PLUS, DIGIT, NUMBER_PLUS_INTEGER);
+        on(NUMBER_PLUS, DOT, NUMBER_DOT);
+        on(NUMBER_INTEGER, DIGIT, NUMBER_INTEGER);
+        on(NUMBER_INTEGER, DOT, NUMBER_INTEGER_DOT);
+        on(NUMBER_PLUS_INTEGER, DIGIT, NUMBER_PLUS_INTEGER);
+        on(NUMBER_PLUS_INTEGER, DOT, NUMBER_INTEGER_DOT);
+        on(NUMBER_INTEGER_DOT, DIGIT, NUMBER_FRACTION);
+        on(NUMBER_DOT, DIGIT, NUMBER_FRACTION);
+        on(NUMBER_FRACTION, DIGIT, NUMBER_FRACTION);
+        MASKS[NUMBER_INTEGER] = bit(SType.INT) | bit(SType.DOUBLE);
+        MASKS[NUMBER_PLUS_INTEGER] = bit(SType.DOUBLE);
+        MASKS[NUMBER_INTEGER_DOT] = bit(SType.DOUBLE);
+        MASKS[NUMBER_FRACTION] = bit(SType.DOUBLE);
+
+        // Booleans: one state per letter read
+        word(TRUE, TRUE_PREFIX);
+        word(FALSE, FALSE_PREFIX);
+
+        // Strings: "[^line terminators]*", where the last quote read may be the closing one
+        on(START, DOUBLE_QUOTE, STRING);
+        for (int c = 0; c < CLASSES; c++) {
+            if (c == LINE_TERMINATOR) continue;
+            on(STRING, c, c == DOUBLE_QUOTE ? STRING_QUOTE : STRING);
+            on(STRING_QUOTE, c, c == DOUBLE_QUOTE ? STRING_QUOTE : STRING);
+        }
+        MASKS[STRING_QUOTE] = bit(SType.STRING);
+
+        // Chars: '[^line terminators]'
+        on(START, SINGLE_QUOTE, CHAR_OPEN);
+        for (int c = 0; c < CLASSES; c++) {
+            if (c != LINE_TERMINATOR) on(CHAR_OPEN, c, CHAR_BODY);
+        }
+        on(CHAR_BODY, SINGLE_QUOTE, CHAR_CLOSE);
+        MASKS[CHAR_CLOSE] = bit(SType.CHAR);
+
+        for (SType target : SType.values()) {
+            for (SType source : SType.values()) {
+                if (target.accepts(source)) ACCEPTED[target.getId()] |= bit(source);
+            }
+        }
+    }
+
+    private LiteralClassifier() {
+    }
+
+    /**
+     * Classifies a whole value.
+     *
+     * @param value The value, which is not trimmed.
+     * @return The mask of the literal types the value matches, or {@link #NONE}.
+     */
+    public static int classify(CharSequence value) {
+        return classify(value, 0, value.length());
+    }
+
+    /**
+     * Classifies a part of a line, without copying it out of the line.
+     *
+     * @param text The text holding the value.
+     * @param start The index of the first character of the value.
+     * @param end The index after the last character of the value.
+     * @return The mask of the literal types the value matches, or {@link #NONE}.
+     */
+    public static int classify(CharSequence text, int start, int end) {
+        int state = START;
+        for (int i = start; i < end && state != DEAD; i++) {
+            state = NEXT[state * CLASSES + classOf(text.charAt(i))];
+        }
+        return MASKS[state];
+    }
+
+    /**
+     * Finds the type of a literal, the first of int, double, boolean, String and char whose pattern it
+     * matches.
+     *
+     * @param mask A mask returned by {@link #classify}.
+     * @return The type, or null for {@link #NONE}.
+     */
+    public static SType typeOf(int mask) {
+        return mask == NONE ? null : SType.fromId(Integer.numberOfTrailingZeros(mask));
+    }
+
+    /**
+     * Checks whether a literal can be assigned, passed or used where a type is expected.
+     *
+     * @param target The expected type.
+     * @param mask A mask returned by {@link #classify}.
+     * @return True if the literal is of a type the expected type accepts, false otherwise.
+     */
+    public static boolean isAcceptedBy(SType target, int mask) {
+        return (ACCEPTED[target.getId()] & mask) != NONE;
+    }
+
+    /**
+     * @return The bit of a type in a mask.
+     */
+    private static int bit(SType type) {
+        return 1 << type.getId();
+    }
+
+    /**
+     * Adds a transition.
+     */
+    private static void on(int state, int characterClass, int next) {
+        NEXT[state * CLASSES + characterClass] = (byte) next;
+    }
+
+    /**
+     * Adds the states that read a boolean literal letter by letter, the last one accepting it.
+     */
+    private static void word(String word, int firstState) {
+        int state = START;
+        for (int i = 0; i < word.length(); i++) {
+            on(state, ASCII_CLASSES[word.charAt(i)], firstState + i);
+            state = firstState + i;
+        }
+        MASKS[state] = bit(SType.BOOLEAN);
+    }
+
+    /**
+     * @return The character class of a character; line terminators are the characters a regex dot does
+     * not match.
+     */
+    private static int classOf(char c) {
+        if (c < ASCII) return ASCII_CLASSES[c];
+        return c == NEXT_LINE || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR ? LINE_TERMINATOR : OTHER;
+    }
+}
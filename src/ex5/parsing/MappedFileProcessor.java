@@ -0,0 +1,204 @@
+package ex5.parsing;
+
+import ex5.exceptions.FileException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A FileProcessor that memory-maps the file and finds line boundaries by scanning its bytes.
+ * Lines made only of ASCII bytes are returned as {@link CharSequence} views over the mapped file, so
+ * no String is created for them unless the caller asks for one. Lines with other bytes are decoded
+ * with the default charset, the same way a Scanner decodes them.
+ * Produces the same lines as {@link ScannerFileProcessor}, including the Unicode line separators
+ * (next line, line separator and paragraph separator) a Scanner splits on.
+ * @author Tomer Zilberman
+ */
+public class MappedFileProcessor extends FileProcessor {
+    private static final byte LINE_FEED = '\n', CARRIAGE_RETURN = '\r';
+    private static final char NEXT_LINE = '\u0085', LINE_SEPARATOR = '\u2028',
+            PARAGRAPH_SEPARATOR = '\u2029';
+
+    /**
+     * A view of ASCII bytes of the mapped file as characters.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int start, end;
+
+        /**
+         * @param buffer The mapped file.
+         * @param start Index of the first byte of the view.
+         * @param end Index after the last byte of the view.
+         */
+        private AsciiSequence(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new AsciiSequence(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /** The mapped file. */
+    private final MappedByteBuffer buffer;
+
+    /** Name of the mapped file. */
+    private final String fileName;
+
+    /** Index of the next byte to read. */
+    private int position;
+
+    /** Lines decoded from a non-ASCII line that were not returned yet, or null. */
+    private String[] pendingLines;
+
+    /** Index of the next line in pendingLines. */
+    private int pendingIndex;
+
+    /**
+     * Constructs a MappedFileProcessor for the specified file.
+     *
+     * @param fileName the name of the file to process
+     * @throws FileException if the file cannot be opened or mapped
+     */
+    public MappedFileProcessor(String fileName) throws FileException {
+        final String FILE_ERROR_MESSAGE = "File: " + fileName + " did not open";
+        this.fileName = fileName;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException | UnsupportedOperationException e) {
+            throw new FileException(FILE_ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * @return The name of the file.
+     */
+    @Override
+    public String getName() {
+        return fileName;
+    }
+
+    /**
+     * Reads the next line from the file.
+     *
+     * @return the next line from the file, or null if no more lines are available
+     */
+    @Override
+    public CharSequence readLine() {
+        if (pendingLines != null) {
+            String line = pendingLines[pendingIndex++];
+            if (pendingIndex == pendingLines.length) pendingLines = null;
+            return line;
+        }
+        int limit = buffer.limit();
+        if (position >= limit) return null;
+
+        int start = position, end = position;
+        boolean isAscii = true;
+        while (end < limit) {
+            byte b = buffer.get(end);
+            if (b == LINE_FEED || b == CARRIAGE_RETURN) break;
+            if (b < 0) isAscii = false;
+            end++;
+        }
+        boolean terminated = end < limit;
+        position = end;
+        if (terminated) {
+            position += (buffer.get(end) == CARRIAGE_RETURN && end + 1 < limit &&
+                    buffer.get(end + 1) == LINE_FEED) ? 2 : 1;
+        }
+        addBytesRead(position - start);
+        if (isAscii) return new AsciiSequence(buffer, start, end);
+        return splitDecoded(decode(start, end), terminated);
+    }
+
+    /**
+     * Decodes a range of the file with the default charset.
+     */
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * Splits a decoded line on the Unicode line separators a Scanner recognizes. Returns the first
+     * part and keeps the others for the following calls to {@link #readLine()}.
+     *
+     * @param text The decoded line.
+     * @param terminated Whether the line was followed by a line break in the file.
+     * @return The first line of the text.
+     */
+    private String splitDecoded(String text, boolean terminated) {
+        int parts = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (isUnicodeSeparator(text.charAt(i))) parts++;
+        }
+        if (parts == 1) return text;
+        // A separator at the very end of the file does not start another line
+        if (!terminated && isUnicodeSeparator(text.charAt(text.length() - 1))) parts--;
+
+        String[] lines = new String[parts];
+        int count = 0, lineStart = 0;
+        for (int i = 0; i < text.length() && count < parts; i++) {
+            if (isUnicodeSeparator(text.charAt(i))) {
+                lines[count++] = text.substring(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (count < parts) lines[count] = text.substring(lineStart);
+        if (parts > 1) {
+            pendingLines = lines;
+            pendingIndex = 1;
+        }
+        return lines[0];
+    }
+
+    private static boolean isUnicodeSeparator(char c) {
+        return c == NEXT_LINE || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+    }
+
+    /**
+     * Restarts reading from the first line of the mapped file.
+     */
+    @Override
+    public void reset() {
+        position = 0;
+        pendingLines = null;
+    }
+
+    /**
+     * Nothing to release: the channel is closed right after mapping, and the mapping is released
+     * once the lines that view it are no longer used.
+     */
+    @Override
+    public void close() {
+    }
+}
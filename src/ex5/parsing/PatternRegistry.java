@@ -0,0 +1,158 @@
+package ex5.parsing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A registry of compiled regex patterns. Every regex is compiled exactly once, and each thread reuses
+ * its own {@link Matcher} per pattern, so matching on the hot path allocates neither a Pattern nor a Matcher.
+ * The line-level patterns of {@link RegexUtils} are matched by the recognizers of {@link LineClassifier}
+ * instead of a Matcher: they accept the same lines in time linear in the line length, where the backtracking
+ * regex engine can take time polynomial or exponential in it, e.g. on long declarations of string literals.
+ * The registry counts compilations and matches, which makes recompilation on the hot path visible.
+ * @author Tomer Zilberman
+ */
+public class PatternRegistry {
+
+    /**
+     * A compiled pattern together with the per-thread matchers created for it.
+     */
+    private static class Entry {
+        /** The compiled pattern. */
+        private final Pattern pattern;
+
+        /** A reusable matcher for the pattern, one per thread. */
+        private final ThreadLocal<Matcher> matcher;
+
+        /** The bucket whose recognizer matches the pattern in linear time, or null to use the matcher. */
+        private final LineKind recognizer;
+
+        /** Number of match operations performed with the pattern. */
+        private final LongAdder matches = new LongAdder();
+
+        /**
+         * Compiles the given regex.
+         *
+         * @param regex The regex to compile.
+         */
+        private Entry(String regex) {
+            pattern = Pattern.compile(regex);
+            matcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
+            recognizer = RECOGNIZED.get(regex);
+            compilations.increment();
+        }
+    }
+
+    /** The compiled patterns, keyed by their regex. */
+    private static final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Number of regexes compiled so far. */
+    private static final LongAdder compilations = new LongAdder();
+
+    /** The line-level regexes, each with the bucket whose recognizer matches it. */
+    private static final Map<String, LineKind> RECOGNIZED = new HashMap<>();
+
+    static {
+        RECOGNIZED.put(RegexUtils.EMPTY_LINE, LineKind.EMPTY);
+        RECOGNIZED.put(RegexUtils.SINGLE_LINE_COMMENT, LineKind.COMMENT);
+        RECOGNIZED.put(RegexUtils.RETURN_STATEMENT, LineKind.RETURN);
+        RECOGNIZED.put(RegexUtils.CLOSING_SCOPE, LineKind.CLOSING_SCOPE);
+        RECOGNIZED.put(RegexUtils.VARIABLE_DECLARATION, LineKind.VARIABLE_DECLARATION);
+        RECOGNIZED.put(RegexUtils.METHOD_DECLARATION_ONLY, LineKind.METHOD_DECLARATION);
+        RECOGNIZED.put(RegexUtils.IF_WHILE_BLOCK, LineKind.IF_WHILE_BLOCK);
+        RECOGNIZED.put(RegexUtils.VARIABLE_VALUE_CHANGE, LineKind.VARIABLE_VALUE_CHANGE);
+        RECOGNIZED.put(RegexUtils.METHOD_CALL_ONLY, LineKind.METHOD_CALL);
+    }
+
+    private PatternRegistry() {
+    }
+
+    /**
+     * Returns the entry of a regex, compiling it on first use.
+     *
+     * @param regex The regex.
+     * @return The registry entry of the regex.
+     */
+    private static Entry entry(String regex) {
+        Entry entry = entries.get(regex);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(regex, Entry::new);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the compiled pattern of a regex, compiling it on first use.
+     *
+     * @param regex The regex.
+     * @return The compiled Pattern.
+     */
+    public static Pattern get(String regex) {
+        return entry(regex).pattern;
+    }
+
+    /**
+     * Checks if the entire input matches a regex, using the recognizer of a line-level regex, or this
+     * thread's matcher for any other regex.
+     *
+     * @param input Input to match.
+     * @param regex Regex pattern.
+     * @return True if matches, false otherwise.
+     */
+    public static boolean matches(CharSequence input, String regex) {
+        Entry entry = entry(regex);
+        entry.matches.increment();
+        if (entry.recognizer != null) return LineClassifier.matches(input, entry.recognizer);
+        return entry.matcher.get().reset(input).matches();
+    }
+
+    /**
+     * Splits the input around matches of a regex, like {@link String#split(String, int)}.
+     *
+     * @param input Input to split.
+     * @param regex Regex of the delimiter.
+     * @param limit The split limit, as in {@link String#split(String, int)}.
+     * @return The split parts.
+     */
+    public static String[] split(CharSequence input, String regex, int limit) {
+        Entry entry = entry(regex);
+        entry.matches.increment();
+        return entry.pattern.split(input, limit);
+    }
+
+    /**
+     * @return The number of regexes compiled since startup.
+     */
+    public static long getCompilationCount() {
+        return compilations.sum();
+    }
+
+    /**
+     * @return The number of match and split operations performed since startup.
+     */
+    public static long getMatchCount() {
+        long total = 0;
+        for (Entry entry : entries.values()) total += entry.matches.sum();
+        return total;
+    }
+
+    /**
+     * @return The number of match and split operations performed with each regex since startup.
+     */
+    public static Map<String, Long> getMatchCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        entries.forEach((regex, entry) -> counts.put(regex, entry.matches.sum()));
+        return counts;
+    }
+
+    /**
+     * @return The number of distinct regexes in the registry.
+     */
+    public static int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,116 @@
+package ex5.parsing;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * A FileProcessor over a stream of characters, such as standard input or the output of a code generator.
+ * Lines are read as they arrive, through a fixed buffer, and split on the same line terminators a Scanner
+ * recognizes, so the source is never written to disk or held in memory as a whole. A stream can only be
+ * read once, so this processor cannot be reset; the compiler keeps the lines it needs for its second pass.
+ * @author Tomer Zilberman
+ */
+public class ReaderFileProcessor extends FileProcessor {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int END_OF_STREAM = -1;
+    private static final char LINE_FEED = '\n', CARRIAGE_RETURN = '\r';
+
+    private final Reader reader;                              // The stream being read
+    private final char[] buffer = new char[BUFFER_SIZE];      // Characters read but not yet returned
+    private final StringBuilder line = new StringBuilder();   // The line being assembled across refills
+    private int position;                                     // Index of the next character in the buffer
+    private int limit;                                        // Number of valid characters in the buffer
+    private boolean endOfStream;                              // Whether the stream is exhausted
+
+    /**
+     * Constructs a ReaderFileProcessor over the given stream.
+     *
+     * @param reader the stream to read; closed by {@link #close()}
+     */
+    public ReaderFileProcessor(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next line from the stream, waiting for it to arrive.
+     *
+     * @return the next line, or null if the stream has ended
+     * @throws UncheckedIOException if reading the stream fails
+     */
+    @Override
+    public String readLine() {
+        line.setLength(0);
+        boolean consumed = false;
+        while (position < limit || fill()) {
+            consumed = true;
+            int start = position;
+            while (position < limit && !isLineTerminator(buffer[position])) position++;
+            line.append(buffer, start, position - start);
+            if (position < limit) {
+                char terminator = buffer[position++];
+                // A carriage return followed by a line feed ends a single line
+                if (terminator == CARRIAGE_RETURN && (position < limit || fill()) && buffer[position] == LINE_FEED) {
+                    position++;
+                    addBytesRead(1);
+                }
+                addBytesRead(line.length() + 1);
+                return line.toString();
+            }
+        }
+        addBytesRead(line.length());
+        return consumed ? line.toString() : null;
+    }
+
+    /**
+     * A stream cannot be read twice.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void reset() {
+        throw new UnsupportedOperationException("A stream cannot be read again");
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws UncheckedIOException if closing the stream fails
+     */
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads more characters into the empty buffer, waiting until at least one arrives.
+     *
+     * @return False if the stream has ended.
+     */
+    private boolean fill() {
+        if (endOfStream) return false;
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, 0, BUFFER_SIZE);
+            } while (read == 0);
+            position = 0;
+            limit = Math.max(read, 0);
+            endOfStream = read == END_OF_STREAM;
+            return !endOfStream;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The line terminators of a Scanner.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == LINE_FEED || c == CARRIAGE_RETURN || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
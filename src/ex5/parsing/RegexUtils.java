@@ -1,11 +1,13 @@
 package ex5.parsing;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * A utility class with regex patterns and helper methods for validating and parsing s-Java code.
  * The class assumes that it deals with lines that has been trimmed.
+ * Matching takes time linear in the input length: the line-level patterns are matched by the recognizers of
+ * {@link LineClassifier} (see {@link PatternRegistry}), and the other patterns are written so that the
+ * regex engine never retries a character more than a constant number of times.
  * @author Tomer Zilberman
  */
 public class RegexUtils {
@@ -13,11 +15,11 @@ public class RegexUtils {
     /** Valid variable name */
     public static final String VARIABLE_NAME = "[a-zA-Z_][a-zA-Z0-9_]*";
 
-    /** Invalid variable name*/
-    public static final String ILLEGAL_VARIABLE_NAME = "(.*__+.|_)";
+    /** Invalid variable name. Same as "(.*__+.|_)", without retrying the "__+" at every underscore. */
+    public static final String ILLEGAL_VARIABLE_NAME = "(.*__.|_)";
 
-    /** Invalid method name */
-    public static final String ILLEGAL_METHOD_NAME = "(.*__+.|_.*)";
+    /** Invalid method name. Same as "(.*__+.|_.*)", without retrying the "__+" at every underscore. */
+    public static final String ILLEGAL_METHOD_NAME = "(.*__.|_.*)";
 
     /** Valid method name */
     public static final String METHOD_NAME = "[a-zA-Z_][a-zA-Z0-9_]*";
@@ -43,8 +45,12 @@ public class RegexUtils {
     /** Integer literal with no place to add anything: allows optional negative signs and digits. */
     public static final String INTEGER_ONLY = "^-?\\d+$";
 
+    /** Number with optional sign, digits and dot, the same as "(-|\+)?(\d*\.?\d+|\d+\.?\d*)".
+     * Written with one way to match each number, and possessive quantifiers, so that it never backtracks. */
+    private static final String NUMBER = "[-+]?+(\\d++(\\.\\d*+)?+|\\.\\d++)";
+
     /** Double literal with no place to add anything: matches floating-point numbers with optional signs. */
-    public static final String DOUBLE_ONLY = "(-|\\+)?(\\d*\\.?\\d+|\\d+\\.?\\d*)";
+    public static final String DOUBLE_ONLY = NUMBER;
 
     /** Boolean literal with no place to add anything: matches "true" or "false". */
     public static final String BOOLEAN_ONLY = "^(true|false)$";
@@ -57,7 +63,7 @@ public class RegexUtils {
 
     /** Variable values: valid literals, variable names, or combinations. */
     public static final String VARIABLE_VALUES =
-            "(true|false|\".*\"|'.'|(-|\\+)?\\d*\\.?\\d+|(-|\\+)?\\d+\\.?\\d*|" + VARIABLE_NAME + ")";
+            "(true|false|\".*\"|'.'|" + NUMBER + "|" + VARIABLE_NAME + ")";
 
     /** Method call: matches method name followed by parentheses and optional arguments. */
     public static final String METHOD_CALL_ONLY = "^" + METHOD_NAME + "\\s*\\(.*\\)\\s*;$";
@@ -94,7 +100,7 @@ public class RegexUtils {
     public static final String BOOLEAN = "boolean";
 
     /** The keyword for a String */
-    public static final String STRING = "string";
+    public static final String STRING = "String";
 
     /** The keyword for a char */
     public static final String CHAR = "char";
@@ -103,13 +109,13 @@ public class RegexUtils {
     public static final String FINAL = "final";
 
     /**
-     * Compiles a regex into a Pattern.
+     * Returns the compiled Pattern of a regex. Each regex is compiled only once, see {@link PatternRegistry}.
      *
      * @param regex Regex to compile.
      * @return Compiled Pattern object.
      */
     public static Pattern compilePattern(String regex) {
-        return Pattern.compile(regex);
+        return PatternRegistry.get(regex);
     }
 
     /**
@@ -120,9 +126,19 @@ public class RegexUtils {
      * @return True if matches, false otherwise.
      */
     public static boolean matches(String input, String regex) {
-        Pattern pattern = compilePattern(regex);
-        Matcher matcher = pattern.matcher(input);
-        return matcher.matches();
+        return PatternRegistry.matches(input, regex);
+    }
+
+    /**
+     * Splits a string around matches of a regex, like {@link String#split(String, int)}.
+     *
+     * @param input Input string.
+     * @param regex Regex of the delimiter.
+     * @param limit The split limit.
+     * @return The split parts.
+     */
+    public static String[] split(String input, String regex, int limit) {
+        return PatternRegistry.split(input, regex, limit);
     }
 
     /**
@@ -136,18 +152,13 @@ public class RegexUtils {
     }
 
     /**
-     * Determines the type of a literal argument.
+     * Determines the type of a literal argument, reading it once with {@link LiteralClassifier}.
      *
      * @param argument Input argument.
-     * @return Type of the literal (int, double, boolean, String, char), or empty if invalid.
+     * @return Type of the literal (int, double, boolean, String, char), or null if invalid.
      */
-    public static String getLiteralType(String argument) {
-        if (argument.matches(INTEGER_ONLY)) return INTEGER;
-        if (argument.matches(DOUBLE_ONLY)) return DOUBLE;
-        if (argument.matches(BOOLEAN_ONLY)) return BOOLEAN;
-        if (argument.matches(STRING_ONLY)) return STRING;
-        if (argument.matches(CHAR_ONLY)) return CHAR;
-        return "";
+    public static SType getLiteralType(String argument) {
+        return LiteralClassifier.typeOf(LiteralClassifier.classify(argument));
     }
 
     /**
@@ -158,8 +169,6 @@ public class RegexUtils {
      */
     public static boolean isValidType(String type) {
         if (type.contains(FINAL)) type = type.replace(FINAL, "");
-        type = type.trim();
-        return type.equals(INTEGER) || type.equals(DOUBLE) || type.equals(BOOLEAN) ||
-                type.equals(CHAR) || type.equals(STRING);
+        return SType.fromKeyword(type.trim()) != null;
     }
 }
@@ -0,0 +1,100 @@
+package ex5.parsing;
+
+import java.util.HashMap;
+
+/**
+ * The types of s-Java. Each type knows which types it accepts: every type accepts itself, a double also
+ * accepts an int, and a boolean also accepts an int or a double. Compatibility is a lookup in a table
+ * computed once, so type checks never compare type names.
+ * @author Tomer Zilberman
+ */
+public enum SType {
+    /** See {@link RegexUtils#INTEGER}. */
+    INT(RegexUtils.INTEGER),
+
+    /** See {@link RegexUtils#DOUBLE}. */
+    DOUBLE(RegexUtils.DOUBLE),
+
+    /** See {@link RegexUtils#BOOLEAN}. */
+    BOOLEAN(RegexUtils.BOOLEAN),
+
+    /** See {@link RegexUtils#STRING}. */
+    STRING(RegexUtils.STRING),
+
+    /** See {@link RegexUtils#CHAR}. */
+    CHAR(RegexUtils.CHAR);
+
+    /** ACCEPTS[target][source] tells whether a value of type source can be used where target is expected. */
+    private static final boolean[][] ACCEPTS = new boolean[values().length][values().length];
+
+    /** Every type, indexed by its id. */
+    private static final SType[] BY_ID = values();
+
+    /** The type of each keyword. */
+    private static final HashMap<String, SType> KEYWORDS = new HashMap<>();
+
+    static {
+        for (SType type : values()) {
+            ACCEPTS[type.ordinal()][type.ordinal()] = true;
+            KEYWORDS.put(type.keyword, type);
+        }
+        ACCEPTS[DOUBLE.ordinal()][INT.ordinal()] = true;
+        ACCEPTS[BOOLEAN.ordinal()][INT.ordinal()] = true;
+        ACCEPTS[BOOLEAN.ordinal()][DOUBLE.ordinal()] = true;
+    }
+
+    /** The keyword of the type in s-Java source. */
+    private final String keyword;
+
+    /**
+     * @param keyword The keyword of the type in s-Java source.
+     */
+    SType(String keyword) {
+        this.keyword = keyword;
+    }
+
+    /**
+     * Checks whether a value of another type can be assigned, passed or used where this type is expected.
+     *
+     * @param source The type of the value.
+     * @return True if compatible, false otherwise.
+     */
+    public boolean accepts(SType source) {
+        return ACCEPTS[ordinal()][source.ordinal()];
+    }
+
+    /**
+     * @return The id of the type, a small number that can be stored in a primitive array.
+     */
+    public byte getId() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Finds the type of an id.
+     *
+     * @param id An id returned by {@link #getId()}.
+     * @return The type.
+     */
+    public static SType fromId(int id) {
+        return BY_ID[id];
+    }
+
+    /**
+     * Finds the type of a keyword.
+     *
+     * @param keyword A type keyword, e.g. "int".
+     * @return The type, or null if the keyword is not a type.
+     */
+    public static SType fromKeyword(String keyword) {
+        return KEYWORDS.get(keyword);
+    }
+
+    /**
+     * @return The keyword of the type, as written in s-Java source.
+     */
+    @Override
+    public String toString() {
+        return keyword;
+    }
+}
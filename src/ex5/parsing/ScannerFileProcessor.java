@@ -0,0 +1,78 @@
+package ex5.parsing;
+
+import ex5.exceptions.FileException;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Scanner;
+
+/**
+ * The ScannerFileProcessor class provides functionality to process and read lines from a file.
+ * It uses a Scanner for reading the file line by line and allows resetting the file reading process.
+ * @author Tomer Zilberman
+ */
+public class ScannerFileProcessor extends FileProcessor {
+    private InputStream inputStream; // The input stream for the file
+    private Scanner scanner;        // Scanner object used for reading the file
+    private String filename;        // Name of the file being processed
+
+    /**
+     * Constructs a ScannerFileProcessor for the specified file.
+     *
+     * @param fileName the name of the file to process
+     * @throws FileException if the file cannot be found
+     */
+    public ScannerFileProcessor(String fileName) throws FileException {
+        final String FILE_ERROR_MESSAGE = "File: " + fileName + " did not open";
+        this.filename = fileName;
+        try {
+            inputStream = new FileInputStream(fileName);
+        } catch (FileNotFoundException e) {
+            throw new FileException(FILE_ERROR_MESSAGE);
+        }
+        scanner = new Scanner(inputStream); // Initialize the Scanner with the input stream.
+    }
+
+    /**
+     * @return The name of the file.
+     */
+    @Override
+    public String getName() {
+        return filename;
+    }
+
+    /**
+     * Reads the next line from the file.
+     *
+     * @return the next line from the file, or null if no more lines are available
+     */
+    @Override
+    public String readLine() {
+        if (scanner.hasNextLine()) {
+            String line = scanner.nextLine(); // Return the next line if available.
+            addBytesRead(line.length() + 1);
+            return line;
+        }
+        return null; // Return null if no more lines are present.
+    }
+
+    /**
+     * Resets the file reading process by reinitializing the Scanner object.
+     *
+     * @throws FileNotFoundException if the file cannot be reopened
+     */
+    @Override
+    public void reset() throws FileNotFoundException {
+        scanner.close();
+        scanner = new Scanner(new FileInputStream(filename));
+    }
+
+    /**
+     * Closes the Scanner and the file underneath it.
+     */
+    @Override
+    public void close() {
+        scanner.close();
+    }
+}
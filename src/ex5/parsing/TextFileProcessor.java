@@ -0,0 +1,63 @@
+package ex5.parsing;
+
+import java.nio.CharBuffer;
+
+/**
+ * A FileProcessor over source text that is already in memory. Lines are returned as views of the text,
+ * split on the same line terminators a Scanner recognizes.
+ * @author Tomer Zilberman
+ */
+public class TextFileProcessor extends FileProcessor {
+    private final CharSequence text; // The source text
+    private int position;            // Index of the next character to read
+
+    /**
+     * Constructs a TextFileProcessor for the given source text.
+     *
+     * @param text the source text
+     */
+    public TextFileProcessor(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * Reads the next line from the text.
+     *
+     * @return the next line, or null if no more lines are available
+     */
+    @Override
+    public CharSequence readLine() {
+        int length = text.length();
+        if (position >= length) return null;
+        int start = position, end = position;
+        while (end < length && !isLineTerminator(text.charAt(end))) end++;
+        position = end;
+        if (end < length) {
+            position += (text.charAt(end) == '\r' && end + 1 < length && text.charAt(end + 1) == '\n') ? 2 : 1;
+        }
+        addBytesRead(position - start);
+        return CharBuffer.wrap(text, start, end);
+    }
+
+    /**
+     * Restarts reading from the first line of the text.
+     */
+    @Override
+    public void reset() {
+        position = 0;
+    }
+
+    /**
+     * Nothing to release.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * The line terminators of a Scanner.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -1,13 +1,23 @@
 package ex5.validation;
 
+import ex5.exceptions.ErrorCode;
 import ex5.exceptions.ValidationException;
+import ex5.parsing.LiteralClassifier;
 import ex5.parsing.RegexUtils;
+import ex5.parsing.SType;
 
 /**
  * Validates if/while conditions in s-Java code by checking syntax, variable states, and types.
+ * <p>
+ * The condition is scanned once, in place: operands are found between the && and || operators, literals are
+ * recognized by {@link LiteralClassifier}, and variables are looked up in the symbol table where they appear
+ * in the line. Nothing is copied out of the line unless an error is reported.
  * @author Tomer Zilberman
  */
 public class ConditionValidator implements Validator {
+    private static final char START_CONDITION = '(', END_CONDITION = ')', AND = '&', OR = '|';
+    private static final int OPERATOR_LENGTH = 2;
+
     SymbolTable symbolTable;
 
     /**
@@ -26,12 +36,12 @@ public class ConditionValidator implements Validator {
      * @throws ValidationException If the line contains invalid conditions.
      */
     public void validate(String line) throws ValidationException {
-        final String START_CONDITION = "(", END_CONDITION = ")";
         // Check for if/while syntax using regex
-        if (line.matches(RegexUtils.IF_WHILE_BLOCK)) {
-            String condition = line.substring(line.indexOf(START_CONDITION) + 1,
-                    line.indexOf(END_CONDITION)).trim();
-            validateCondition(condition);
+        if (RegexUtils.matches(line, RegexUtils.IF_WHILE_BLOCK)) {
+            int start = line.indexOf(START_CONDITION) + 1, end = line.indexOf(END_CONDITION);
+            // The condition is trimmed as a whole before it is split
+            start = trimStart(line, start, end);
+            validateCondition(line, start, trimEnd(line, start, end));
         }
     }
 
@@ -42,45 +52,118 @@ public class ConditionValidator implements Validator {
      * @throws ValidationException If any variable or literal in the condition is invalid.
      */
     public void validateCondition(String overallCondition) throws ValidationException {
+        validateCondition(overallCondition, 0, overallCondition.length());
+    }
+
+    /**
+     * Validates a condition that is a part of a line. Operands are split on && and || as
+     * {@link String#split(String)} would split them, so an operand that is left empty between two operators is
+     * an undefined variable, while operators at the end of the condition are ignored.
+     *
+     * @param line The line holding the condition.
+     * @param start The index of the first character of the condition.
+     * @param end The index after the last character of the condition.
+     * @throws ValidationException If any variable or literal in the condition is invalid.
+     */
+    private void validateCondition(String line, int start, int end) throws ValidationException {
+        boolean split = false, emptyOperand = false;
+        int operandStart = start;
+        for (int i = start; i + 1 < end; i++) {
+            char c = line.charAt(i);
+            if ((c == AND || c == OR) && line.charAt(i + 1) == c) {
+                split = true;
+                emptyOperand = checkOperand(line, operandStart, i, emptyOperand);
+                operandStart = i + OPERATOR_LENGTH;
+                i++;
+            }
+        }
+        if (split) {
+            checkOperand(line, operandStart, end, emptyOperand);
+        } else {
+            // Without an operator the condition is a single operand, even if it is empty
+            start = trimStart(line, start, end);
+            checkTrimmedOperand(line, start, trimEnd(line, start, end));
+        }
+        // Enter a new scope in the symbol table
+        symbolTable.enterScope();
+    }
+
+    /**
+     * Checks one operand of a condition. An empty operand is only reported once a non-empty operand follows it,
+     * since empty operands at the end of the condition are dropped.
+     *
+     * @param line The line holding the operand.
+     * @param start The index of the first character of the operand, before trimming.
+     * @param end The index after the last character of the operand, before trimming.
+     * @param emptyBefore Whether an empty operand came before this one.
+     * @return True if the operand is empty and waits to be reported.
+     * @throws ValidationException If the operand, or an empty operand before it, is invalid.
+     */
+    private boolean checkOperand(String line, int start, int end, boolean emptyBefore)
+            throws ValidationException {
+        if (start == end) return true;
+        if (emptyBefore) checkVariable(line, start, start);
+        start = trimStart(line, start, end);
+        checkTrimmedOperand(line, start, trimEnd(line, start, end));
+        return false;
+    }
+
+    /**
+     * Checks a trimmed operand: a number or boolean literal, or a boolean, double or int variable.
+     */
+    private void checkTrimmedOperand(String line, int start, int end) throws ValidationException {
+        final String LITERAL_UNDEFINED = "Literal <> is undefined";
+        int literal = LiteralClassifier.classify(line, start, end);
+        if (literal == LiteralClassifier.NONE) {
+            checkVariable(line, start, end);
+        } else if (!LiteralClassifier.isAcceptedBy(SType.BOOLEAN, literal)) {
+            // Strings and chars are literals, but not of a type a condition accepts
+            throw new ValidationException(ErrorCode.CONDITION_TYPE, LITERAL_UNDEFINED, line.substring(start, end));
+        }
+    }
+
+    /**
+     * Checks that an operand is an initialized variable of a type a condition accepts.
+     */
+    private void checkVariable(String line, int start, int end) throws ValidationException {
         // Error messages for invalid conditions
         final String VARIABLE_UNDEFINED = "Variable <> is undefined";
         final String VARIABLE_UNINITIALIZED = "Variable <> is uninitialized";
         final String VARIABLE_INVALID_TYPE = "Variable <> has invalid type";
-        final String LITERAL_UNDEFINED = "Literal <> is undefined";
-        final String PLACEHOLDER = "<>";
-        final int EXCEPTION_VALUE = -1;
-
-        // Split conditions using logical operators (&&, ||)
-        String[] conditions = overallCondition.split(RegexUtils.CONDITION_SPLITTERS);
-        for (String condition : conditions) {
-            condition = condition.trim();
-            String literalType = RegexUtils.getLiteralType(condition);
 
-            if (literalType.isEmpty()) {
-                // Check if variable exists in the symbol table
-                int lookupScope = symbolTable.findVariableScope(condition);
-                if (lookupScope == EXCEPTION_VALUE) {
-                    throw new ValidationException(VARIABLE_UNDEFINED.replace(PLACEHOLDER, condition));
-                }
+        // Check if variable exists in the symbol table
+        SymbolTable.Variable variable = symbolTable.findVariable(line, start, end);
+        if (variable == null) {
+            throw new ValidationException(ErrorCode.UNDEFINED_VARIABLE, VARIABLE_UNDEFINED,
+                    line.substring(start, end));
+        }
 
-                // Check if variable is initialized
-                if (!symbolTable.isVariableInitialized(lookupScope, condition)) {
-                    throw new ValidationException(VARIABLE_UNINITIALIZED.replace(PLACEHOLDER, condition));
-                }
+        // Check if variable is initialized
+        if (!symbolTable.isInitialized(variable)) {
+            throw new ValidationException(ErrorCode.UNINITIALIZED_VARIABLE, VARIABLE_UNINITIALIZED,
+                    line.substring(start, end));
+        }
 
-                // Check if variable type is valid (boolean, double, or int)
-                String type = symbolTable.getVariableType(lookupScope, condition);
-                if (!(type.equals(RegexUtils.BOOLEAN) || type.equals(RegexUtils.DOUBLE) ||
-                        type.equals(RegexUtils.INTEGER))) {
-                    throw new ValidationException(VARIABLE_INVALID_TYPE.replace(PLACEHOLDER, condition));
-                }
-            } else if (!(literalType.equals(RegexUtils.BOOLEAN) || literalType.equals(RegexUtils.INTEGER) ||
-                    literalType.equals(RegexUtils.DOUBLE))) {
-                // Check if the literal type is valid
-                throw new ValidationException(LITERAL_UNDEFINED.replace(PLACEHOLDER, condition));
-            }
+        // Check if variable type is valid (boolean, double, or int)
+        if (!SType.BOOLEAN.accepts(variable.type)) {
+            throw new ValidationException(ErrorCode.CONDITION_TYPE, VARIABLE_INVALID_TYPE,
+                    line.substring(start, end));
         }
-        // Enter a new scope in the symbol table
-        symbolTable.enterScope();
+    }
+
+    /**
+     * @return The index of the first character of a range that {@link String#trim()} keeps.
+     */
+    private static int trimStart(String line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') start++;
+        return start;
+    }
+
+    /**
+     * @return The index after the last character of a range that {@link String#trim()} keeps.
+     */
+    private static int trimEnd(String line, int start, int end) {
+        while (end > start && line.charAt(end - 1) <= ' ') end--;
+        return end;
     }
 }
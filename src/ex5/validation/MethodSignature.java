@@ -0,0 +1,73 @@
+package ex5.validation;
+
+import ex5.parsing.SType;
+
+import java.util.BitSet;
+
+/**
+ * The parameters of a method, as the symbol table keeps them once the declaration is validated: the type of
+ * each parameter as a type id, its name, and whether it is final. A signature never changes after it is built,
+ * so it can be shared by the tables of several threads, and checking a call against it needs no collections.
+ * @author Tomer Zilberman
+ */
+public final class MethodSignature {
+    private final byte[] typeIds;    // The id of the type of each parameter
+    private final String[] names;    // The name of each parameter
+    private final BitSet finals;     // The indexes of the final parameters
+
+    /**
+     * @param types The type of each parameter.
+     * @param names The name of each parameter.
+     * @param finals The indexes of the final parameters.
+     */
+    MethodSignature(SType[] types, String[] names, BitSet finals) {
+        this.typeIds = new byte[types.length];
+        for (int i = 0; i < types.length; i++) {
+            typeIds[i] = types[i].getId();
+        }
+        this.names = names.clone();
+        this.finals = (BitSet) finals.clone();
+    }
+
+    /**
+     * @return The number of parameters.
+     */
+    public int arity() {
+        return typeIds.length;
+    }
+
+    /**
+     * @param index The index of a parameter.
+     * @return The type of the parameter.
+     */
+    public SType getType(int index) {
+        return SType.fromId(typeIds[index]);
+    }
+
+    /**
+     * @param index The index of a parameter.
+     * @return The name of the parameter.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index The index of a parameter.
+     * @return True if the parameter is final.
+     */
+    public boolean isFinal(int index) {
+        return finals.get(index);
+    }
+
+    /**
+     * Checks whether an argument of a given type can be passed as a parameter.
+     *
+     * @param index The index of the parameter.
+     * @param argumentType The type of the argument.
+     * @return True if compatible, false otherwise.
+     */
+    public boolean accepts(int index, SType argumentType) {
+        return SType.fromId(typeIds[index]).accepts(argumentType);
+    }
+}
@@ -1,18 +1,22 @@
 package ex5.validation;
 
+import ex5.exceptions.ErrorCode;
 import ex5.exceptions.ValidationException;
+import ex5.parsing.LiteralClassifier;
 import ex5.parsing.RegexUtils;
+import ex5.parsing.SType;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 
 /**
  * Validates method declarations, calls, and return statements in s-Java code.
  * @author Tomer Zilberman
  */
 public class MethodValidator implements Validator {
-    private static final char START_BRACKET = '(', END_BRACKET = ')';
-    private static final String PARAM_DELIMITER = ",", SPACE = " ";
+    private static final char START_BRACKET = '(', END_BRACKET = ')', PARAM_DELIMITER_CHAR = ',', SPACE = ' ';
+    private static final String PARAM_DELIMITER = ",";
     private final SymbolTable symbolTable;
+    private final PendingCalls pendingCalls; // Where calls to undeclared methods wait, or null to reject them
 
     /**
      * Constructs a MethodValidator with the provided symbol table for method tracking.
@@ -20,7 +24,18 @@ public class MethodValidator implements Validator {
      * @param symbolTable Symbol table for method and variable validation.
      */
     public MethodValidator(SymbolTable symbolTable) {
+        this(symbolTable, null);
+    }
+
+    /**
+     * Constructs a MethodValidator that defers calls to methods not declared yet instead of rejecting them.
+     *
+     * @param symbolTable Symbol table for method and variable validation.
+     * @param pendingCalls Where calls to methods not declared yet are recorded, or null to reject them.
+     */
+    public MethodValidator(SymbolTable symbolTable, PendingCalls pendingCalls) {
         this.symbolTable = symbolTable;
+        this.pendingCalls = pendingCalls;
     }
 
     /**
@@ -31,14 +46,13 @@ public class MethodValidator implements Validator {
      */
     public void validate(String line) throws ValidationException {
         final String INVALID_METHOD = "Invalid method line: <>";
-        final String PLACEHOLDER = "<>";
 
-        if (line.matches(RegexUtils.METHOD_DECLARATION_ONLY)) {
+        if (RegexUtils.matches(line, RegexUtils.METHOD_DECLARATION_ONLY)) {
             validateMethodDeclaration(line);
-        } else if (line.matches(RegexUtils.METHOD_CALL_ONLY)) {
+        } else if (RegexUtils.matches(line, RegexUtils.METHOD_CALL_ONLY)) {
             validateMethodCall(line);
-        } else if (!line.matches(RegexUtils.RETURN_STATEMENT)) {
-            throw new ValidationException(INVALID_METHOD.replace(PLACEHOLDER, line));
+        } else if (!RegexUtils.matches(line, RegexUtils.RETURN_STATEMENT)) {
+            throw new ValidationException(ErrorCode.INVALID_METHOD_LINE, INVALID_METHOD, line);
         }
     }
 
@@ -50,8 +64,8 @@ public class MethodValidator implements Validator {
      */
     public void validateMethodDeclaration(String line) throws ValidationException {
         final int VOID_LENGTH = 4;
-        String[] nameAndParams = line.substring(VOID_LENGTH,
-                line.indexOf(START_BRACKET)).trim().split(RegexUtils.SPACES);
+        String[] nameAndParams = RegexUtils.split(line.substring(VOID_LENGTH,
+                line.indexOf(START_BRACKET)).trim(), RegexUtils.SPACES, 0);
         String methodName = nameAndParams[nameAndParams.length - 1];
         symbolTable.addMethodParams(methodName);
     }
@@ -65,156 +79,220 @@ public class MethodValidator implements Validator {
     public void validateMethodDeclarationForSweep(String line) throws ValidationException {
         final String INVALID_METHOD = "Method '<>' cannot start with '_' or contain '__'";
         final String ALREADY_DECLARED = "Method '<>' is already declared";
-        final String PLACEHOLDER = "<>";
         final int VOID_LENGTH = 4;
 
-        String[] nameAndParams = line.substring(VOID_LENGTH,
-                line.indexOf(START_BRACKET)).trim().split(RegexUtils.SPACES);
+        String[] nameAndParams = RegexUtils.split(line.substring(VOID_LENGTH,
+                line.indexOf(START_BRACKET)).trim(), RegexUtils.SPACES, 0);
         String methodName = nameAndParams[nameAndParams.length - 1];
 
-        if (methodName.matches(RegexUtils.ILLEGAL_METHOD_NAME)) {
-            throw new ValidationException(INVALID_METHOD.replace(PLACEHOLDER, methodName));
+        if (RegexUtils.matches(methodName, RegexUtils.ILLEGAL_METHOD_NAME)) {
+            throw new ValidationException(ErrorCode.ILLEGAL_METHOD_NAME, INVALID_METHOD, methodName);
         }
         if (symbolTable.methodExists(methodName)) {
-            throw new ValidationException(ALREADY_DECLARED.replace(PLACEHOLDER, methodName));
+            throw new ValidationException(ErrorCode.METHOD_ALREADY_DECLARED, ALREADY_DECLARED, methodName);
         }
 
         String paramsSection = line.substring(line.indexOf(START_BRACKET) + 1,
                 line.indexOf(END_BRACKET)).trim();
-        ArrayList<String[]> parameters = parseParameters(paramsSection);
-        symbolTable.addMethod(methodName, parameters);
+        symbolTable.addMethod(methodName, parseParameters(paramsSection));
     }
 
     /**
-     * Validates a method call, including argument types and counts.
+     * Validates a method call, including argument types and counts. If calls are deferred and the method is not
+     * declared yet, the call is recorded with the types of its arguments, to be checked at the end of the file.
+     * Arguments are walked in place and checked against the signature of the method, so a valid call to a
+     * declared method allocates only the strings of its name and arguments.
      *
      * @param line The method call line.
      * @throws ValidationException If the method is undefined or arguments are invalid.
      */
     public void validateMethodCall(String line) throws ValidationException {
         final String METHOD_NOT_EXISTS = "Method '<>' does not exist";
-        final String METHOD_ARGS = "Method '<1>' expects '<2>' arguments but got '<3>'";
-        final String ARGUMENT_INCOMPATIBLE =
-                "Argument '<1>' of type '<2>' is not compatible with argument '<3>' in method '<4>'";
-        final String PLACEHOLDER_1 = "<1>";
-        final String PLACEHOLDER_2 = "<2>";
-        final String PLACEHOLDER_3 = "<3>";
-        final String PLACEHOLDER_4 = "<4>";
 
-        String methodName = line.substring(0, line.indexOf('(')).trim();
+        int start = line.indexOf(START_BRACKET), end = line.indexOf(END_BRACKET);
+        String methodName = line.substring(0, start).trim();
+        MethodSignature signature = symbolTable.getMethodSignature(methodName);
 
-        if (!symbolTable.methodExists(methodName)) {
-            throw new ValidationException(METHOD_NOT_EXISTS.replace(PLACEHOLDER_1, methodName));
+        if (signature == null) {
+            if (pendingCalls == null) {
+                throw new ValidationException(ErrorCode.UNDEFINED_METHOD, METHOD_NOT_EXISTS, methodName);
+            }
+            String[] arguments = parseArguments(line.substring(start + 1, end).trim());
+            pendingCalls.add(methodName, arguments, getArgumentTypes(arguments));
+            return;
         }
 
-        String argsSection = line.substring(line.indexOf(START_BRACKET) + 1,
-                line.indexOf(END_BRACKET)).trim();
-        ArrayList<String[]> arguments = parseArguments(argsSection);
-        ArrayList<String[]> parameters = symbolTable.getMethodParameters(methodName);
-
-        if (parameters.size() != arguments.size()) {
-            throw new ValidationException(METHOD_ARGS
-                    .replace(PLACEHOLDER_1, methodName)
-                    .replace(PLACEHOLDER_2, String.valueOf(parameters.size()))
-                    .replace(PLACEHOLDER_3, String.valueOf(arguments.size())));
+        // The arguments are split as String.split splits them: empty arguments at the end are dropped
+        start = skipSpaces(line, start + 1, end);
+        while (end > start && line.charAt(end - 1) <= SPACE) end--;
+        while (end > start && line.charAt(end - 1) == PARAM_DELIMITER_CHAR) end--;
+        int count = 0;
+        boolean matches = true;
+        while (start < end) {
+            int comma = line.indexOf(PARAM_DELIMITER_CHAR, start);
+            if (comma < 0 || comma > end) comma = end;
+            int argumentEnd = comma;
+            while (argumentEnd > start && line.charAt(argumentEnd - 1) <= SPACE) argumentEnd--;
+            SType type = getArgumentType(line.substring(skipSpaces(line, start, argumentEnd), argumentEnd));
+            matches &= count < signature.arity() && signature.accepts(count, type);
+            count++;
+            if (comma == end) break;
+            start = comma + 1;
+        }
+        if (!matches || count != signature.arity()) {
+            // Find the error to report the way a deferred call does
+            String[] arguments = parseArguments(line.substring(line.indexOf(START_BRACKET) + 1,
+                    line.indexOf(END_BRACKET)).trim());
+            checkArguments(signature, methodName, arguments, getArgumentTypes(arguments));
+        }
+    }
+
+    /**
+     * Checks the arguments of a call against the parameters of the method called.
+     *
+     * @param signature The signature of the method.
+     * @param methodName The name of the method.
+     * @param arguments The trimmed arguments of the call.
+     * @param argumentTypes The type of each argument.
+     * @throws ValidationException If the number or the types of the arguments do not match.
+     */
+    static void checkArguments(MethodSignature signature, String methodName, String[] arguments,
+                               SType[] argumentTypes) throws ValidationException {
+        final String METHOD_ARGS = "Method '<1>' expects '<2>' arguments but got '<3>'";
+        final String ARGUMENT_INCOMPATIBLE =
+                "Argument '<1>' of type '<2>' is not compatible with argument '<3>' in method '<4>'";
+
+        if (signature.arity() != arguments.length) {
+            throw new ValidationException(ErrorCode.ARGUMENT_COUNT, METHOD_ARGS,
+                    methodName, signature.arity(), arguments.length);
         }
 
-        for (int i = 0; i < parameters.size(); i++) {
-            String expectedType = parameters.get(i)[0];
-            String argumentType = arguments.get(i)[0];
+        for (int i = 0; i < signature.arity(); i++) {
+            SType expectedType = signature.getType(i);
 
-            if (!expectedType.equals(argumentType)) {
-                throw new ValidationException(ARGUMENT_INCOMPATIBLE
-                        .replace(PLACEHOLDER_1, arguments.get(i)[1])
-                        .replace(PLACEHOLDER_2, argumentType)
-                        .replace(PLACEHOLDER_3, expectedType)
-                        .replace(PLACEHOLDER_4, methodName));
+            if (!expectedType.accepts(argumentTypes[i])) {
+                throw new ValidationException(ErrorCode.ARGUMENT_TYPE, ARGUMENT_INCOMPATIBLE,
+                        arguments[i], argumentTypes[i], expectedType, methodName);
             }
         }
     }
 
     /**
-     * Parses method parameters into a list of type-name pairs.
+     * Parses method parameters into the signature of the method.
      *
      * @param rawParameters The raw parameters string from a method declaration.
-     * @return List of parameter type-name pairs.
+     * @return The signature.
      * @throws ValidationException If any parameter is invalid.
      */
-    private ArrayList<String[]> parseParameters(String rawParameters) throws ValidationException {
+    private MethodSignature parseParameters(String rawParameters) throws ValidationException {
         final String PARAMETER_INVALID = "Parameter '<>' is invalid";
         final String INVALID_PARAM_SYNTAX = "Invalid parameter syntax: <>";
         final String INVALID_PARAM_TYPE = "Invalid parameter type: <>";
         final String INVALID_PARAM_NAME = "Duplicate parameter name: <>";
-        final String PLACEHOLDER = "<>";
         final int SPLIT_LIMIT = 3;
 
-        ArrayList<String[]> parametersList = new ArrayList<>();
+        final int TYPE = 0, NAME = 1;
 
-        if (rawParameters == null || rawParameters.matches(RegexUtils.EMPTY_LINE)) {
-            return parametersList;
+        if (rawParameters == null || RegexUtils.matches(rawParameters, RegexUtils.EMPTY_LINE)) {
+            return new MethodSignature(new SType[0], new String[0], new BitSet());
         }
 
         String[] parameters = rawParameters.split(PARAM_DELIMITER);
+        SType[] types = new SType[parameters.length];
+        String[] names = new String[parameters.length];
+        BitSet finals = new BitSet();
 
-        for (String parameter : parameters) {
-            String[] parameterParts = parameter.trim().split(RegexUtils.SPACES, SPLIT_LIMIT);
+        for (int i = 0; i < parameters.length; i++) {
+            String parameter = parameters[i];
+            String[] parameterParts = RegexUtils.split(parameter.trim(), RegexUtils.SPACES, SPLIT_LIMIT);
             if (parameterParts.length == SPLIT_LIMIT) {
                 if (!parameterParts[0].equals(RegexUtils.FINAL)) {
-                    throw new ValidationException(PARAMETER_INVALID.replace(PLACEHOLDER, parameter));
+                    throw new ValidationException(ErrorCode.INVALID_PARAMETER, PARAMETER_INVALID, parameter);
                 }
-                parameterParts = new String[]{parameterParts[0] + SPACE +
-                        parameterParts[1], parameterParts[2]};
+                parameterParts = new String[]{parameterParts[1], parameterParts[2]};
+                finals.set(i);
+            } else if (parameterParts.length != 2) {
+                throw new ValidationException(ErrorCode.INVALID_PARAMETER, INVALID_PARAM_SYNTAX, parameter);
             }
-            if (parameterParts.length != 2) {
-                throw new ValidationException(INVALID_PARAM_SYNTAX.replace(PLACEHOLDER, parameter));
+            types[i] = SType.fromKeyword(parameterParts[TYPE]);
+            if (types[i] == null) {
+                throw new ValidationException(ErrorCode.INVALID_PARAMETER_TYPE, INVALID_PARAM_TYPE,
+                        parameterParts[TYPE]);
             }
-            if (!RegexUtils.isValidType(parameterParts[0])) {
-                throw new ValidationException(INVALID_PARAM_TYPE.replace(PLACEHOLDER, parameterParts[0]));
-            }
-            for (String[] existingParam : parametersList) {
-                if (existingParam[1].equals(parameterParts[1])) {
-                    throw new ValidationException(INVALID_PARAM_NAME.
-                            replace(PLACEHOLDER, parameterParts[1]));
+            for (int j = 0; j < i; j++) {
+                if (names[j].equals(parameterParts[NAME])) {
+                    throw new ValidationException(ErrorCode.DUPLICATE_PARAMETER, INVALID_PARAM_NAME,
+                            parameterParts[NAME]);
                 }
             }
-            parametersList.add(parameterParts);
+            names[i] = parameterParts[NAME];
         }
 
-        return parametersList;
+        return new MethodSignature(types, names, finals);
     }
 
     /**
-     * Parses method call arguments into a list of type-value pairs.
+     * Splits the arguments of a method call.
      *
      * @param rawArguments The raw arguments string from a method call.
-     * @return List of argument type-value pairs.
-     * @throws ValidationException If any argument is invalid.
+     * @return The trimmed arguments.
      */
-    private ArrayList<String[]> parseArguments(String rawArguments) throws ValidationException {
-        final String ARGUMENT_INVALID = "Argument '<>' is of unknown type";
-        final String PLACEHOLDER = "<>";
-        final int OUTSIDE_SCOPE = -1;
-
-        ArrayList<String[]> arguments = new ArrayList<>();
+    private String[] parseArguments(String rawArguments) {
         if (rawArguments.isEmpty()) {
-            return arguments;
+            return new String[0];
         }
-
         String[] args = rawArguments.split(PARAM_DELIMITER);
+        for (int i = 0; i < args.length; i++) {
+            args[i] = args[i].trim();
+        }
+        return args;
+    }
 
-        for (String arg : args) {
-            arg = arg.trim();
-            int argScope = symbolTable.findVariableScope(arg);
-            String type = (argScope != OUTSIDE_SCOPE) ?
-                    symbolTable.getVariableType(argScope, arg) : RegexUtils.getLiteralType(arg);
+    /**
+     * Finds the type of each argument of a method call: the type of the variable it names, or the type
+     * of the literal it is.
+     *
+     * @param arguments The trimmed arguments.
+     * @return The type of each argument.
+     * @throws ValidationException If an argument is neither a variable nor a literal.
+     */
+    private SType[] getArgumentTypes(String[] arguments) throws ValidationException {
+        SType[] types = new SType[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            types[i] = getArgumentType(arguments[i]);
+        }
+        return types;
+    }
 
-            if (type.isEmpty()) {
-                throw new ValidationException(ARGUMENT_INVALID.replace(PLACEHOLDER, arg));
-            }
+    /**
+     * Finds the type of an argument of a method call: the type of the variable it names, or the type
+     * of the literal it is.
+     *
+     * @param argument The trimmed argument.
+     * @return The type of the argument.
+     * @throws ValidationException If the argument is neither a variable nor a literal.
+     */
+    private SType getArgumentType(String argument) throws ValidationException {
+        final String ARGUMENT_INVALID = "Argument '<>' is of unknown type";
+        final int OUTSIDE_SCOPE = -1;
 
-            arguments.add(new String[]{type, arg});
+        int argScope = symbolTable.findVariableScope(argument);
+        SType type = (argScope != OUTSIDE_SCOPE) ?
+                symbolTable.getVariableType(argScope, argument) :
+                LiteralClassifier.typeOf(LiteralClassifier.classify(argument));
+        if (type == null) {
+            throw new ValidationException(ErrorCode.UNKNOWN_ARGUMENT, ARGUMENT_INVALID, argument);
         }
+        return type;
+    }
 
-        return arguments;
+    /**
+     * Skips the characters String.trim removes from the start of a part of a line.
+     *
+     * @return The index of the first other character of the part, or its end.
+     */
+    private static int skipSpaces(String line, int start, int end) {
+        while (start < end && line.charAt(start) <= SPACE) start++;
+        return start;
     }
 }
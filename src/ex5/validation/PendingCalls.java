@@ -0,0 +1,70 @@
+package ex5.validation;
+
+import ex5.exceptions.ErrorCode;
+import ex5.exceptions.ValidationException;
+import ex5.parsing.SType;
+
+import java.util.ArrayList;
+
+/**
+ * Calls to methods that were not declared yet when the call was checked, for validating a file in one pass.
+ * Each call keeps the types of its arguments as they were resolved in the scope of the call, so only the
+ * method itself is looked up when the calls are resolved at the end of the file.
+ * @author Tomer Zilberman
+ */
+public class PendingCalls {
+
+    /**
+     * A call waiting for its method to be declared.
+     */
+    private static class Call {
+        final String methodName;
+        final String[] arguments;
+        final SType[] argumentTypes;
+
+        Call(String methodName, String[] arguments, SType[] argumentTypes) {
+            this.methodName = methodName;
+            this.arguments = arguments;
+            this.argumentTypes = argumentTypes;
+        }
+    }
+
+    private final ArrayList<Call> calls = new ArrayList<>();
+
+    /**
+     * Records a call to a method that is not declared yet.
+     *
+     * @param methodName The name of the method called.
+     * @param arguments The trimmed arguments of the call.
+     * @param argumentTypes The type of each argument, in the scope of the call.
+     */
+    void add(String methodName, String[] arguments, SType[] argumentTypes) {
+        calls.add(new Call(methodName, arguments, argumentTypes));
+    }
+
+    /**
+     * @return The number of calls waiting.
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * Checks every waiting call, in the order the calls were made, against the methods declared by now.
+     *
+     * @param symbolTable The table holding the methods of the whole file.
+     * @throws ValidationException For the first call to a method that does not exist, or whose arguments do not
+     *                             match its parameters.
+     */
+    public void resolve(SymbolTable symbolTable) throws ValidationException {
+        final String METHOD_NOT_EXISTS = "Method '<>' does not exist";
+        for (Call call : calls) {
+            MethodSignature signature = symbolTable.getMethodSignature(call.methodName);
+            if (signature == null) {
+                throw new ValidationException(ErrorCode.UNDEFINED_METHOD, METHOD_NOT_EXISTS, call.methodName);
+            }
+            MethodValidator.checkArguments(signature, call.methodName, call.arguments, call.argumentTypes);
+        }
+        calls.clear();
+    }
+}
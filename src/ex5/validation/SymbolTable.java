@@ -1,14 +1,30 @@
 package ex5.validation;
 
+import ex5.exceptions.ErrorCode;
 import ex5.exceptions.ValidationException;
-import ex5.parsing.RegexUtils;
+import ex5.parsing.SType;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a symbol table for managing variables and methods across multiple scopes.
  * It supports global and local variables, as well as methods with parameters.
+ * <p>
+ * The table is flat: every variable name is interned to an id, and each id maps to the binding visible
+ * from the current scope, which links to the bindings it shadows in outer scopes. Looking a name up is a
+ * single array access whatever the nesting depth. Ids are kept in an open-addressing table hashed the way
+ * String hashes, so a name can also be looked up where it appears in a line, without copying it out.
+ * Each scope keeps a frame with the bindings it declared, so leaving it restores the shadowed bindings;
+ * frames are reused when scopes are entered again.
+ * <p>
+ * Resetting the globals at the end of a method does not visit them: the initialization state a global
+ * gets during a method is stamped with the generation of the method, and a reset starts a new generation,
+ * after which every global reads its initialization state from the global scope again.
+ * <p>
+ * All tables together count the name lookups and the scopes entered, with their depth, since startup.
  * @author Tomer Zilberman
  */
 public class SymbolTable {
@@ -16,34 +32,53 @@ public class SymbolTable {
     /**
      * Represents a variable with its attributes such as name, type, initialization state, etc.
      */
-    private static class Variable {
+    static class Variable {
         /** Name of the variable. */
         public String name;
 
+        /** Id of the name of the variable. */
+        public int id;
+
+        /** The scope the variable is declared in. */
+        public int scope;
+
         /** Data type of the variable (e.g., int, String). */
-        public String type;
+        public SType type;
 
-        /** Whether the variable is initialized. */
+        /**
+         * Whether the variable is initialized. For a global, only valid if {@link #generation} is the
+         * current generation of the table; see {@link #isInitialized(Variable)}.
+         */
         public boolean isInitialized;
 
+        /** The generation of the table when {@link #isInitialized} was last set. */
+        public int generation;
+
         /** Whether the variable is final (immutable after initialization). */
         public boolean isFinal;
 
         /** Whether the variable is an uninitialized global variable. */
         public boolean isUninitializedGlobal;
 
+        /** The variable with the same name in an outer scope that this one shadows, or null. */
+        public Variable shadowed;
+
         /**
          * Constructs a Variable object.
          *
          * @param name The name of the variable.
+         * @param id The id of the name.
+         * @param scope The scope the variable is declared in.
          * @param type The data type of the variable.
          * @param isInitialized Whether the variable is initialized.
          * @param isFinal Whether the variable is final.
          * @param isUninitializedGlobal Whether the variable is an uninitialized global.
          */
-        public Variable(String name, String type, boolean isInitialized,
+        public Variable(String name, int id, int scope, SType type, boolean isInitialized,
                         boolean isFinal, boolean isUninitializedGlobal) {
             this.name = name;
+            this.id = id;
+            this.scope = scope;
             this.type = type;
             this.isInitialized = isInitialized;
             this.isFinal = isFinal;
@@ -51,21 +86,87 @@ public class SymbolTable {
         }
     }
 
-    /** A list of scopes, each represented as a map of variable names to Variable objects. */
-    private ArrayList<HashMap<String, Variable>> scopes;
+    private static final int INITIAL_IDS = 64, INITIAL_FRAMES = 8, INITIAL_FRAME_SIZE = 4;
+    private static final int EMPTY_SLOT = 0, HASH_MULTIPLIER = 31;
+    private static final int NOT_FOUND = -1;
+
+    /** Number of name lookups performed by all tables. */
+    private static final LongAdder lookups = new LongAdder();
+
+    /** Number of scopes entered in all tables. */
+    private static final LongAdder scopesEntered = new LongAdder();
+
+    /** Sum of the depths of the scopes entered in all tables. */
+    private static final LongAdder depthSum = new LongAdder();
+
+    /** Deepest scope entered in any table. */
+    private static final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+    /** The slots of the id table: each holds an id plus one, or EMPTY_SLOT; the length is a power of two. */
+    private int[] idSlots = new int[INITIAL_IDS * 2];
+
+    /** For each id, the name it was given to. */
+    private String[] names = new String[INITIAL_IDS];
+
+    /** Number of ids given so far. */
+    private int idCount;
+
+    /** For each id, the innermost variable with that name, or null. */
+    private Variable[] visible = new Variable[INITIAL_IDS];
+
+    /** For each scope, the variables declared in it; the arrays are kept when a scope is left. */
+    private Variable[][] frames = new Variable[INITIAL_FRAMES][];
+
+    /** Number of variables declared in each scope. */
+    private int[] frameSizes = new int[INITIAL_FRAMES];
+
+    /** The index of the current scope; 0 is the global scope. */
+    private int depth;
 
-    /** A map of method names to their parameter details. */
-    private HashMap<String, ArrayList<String[]>> methods;
+    /** Incremented whenever the globals are reset. */
+    private int generation;
+
+    /** A map of method names to their signatures. */
+    private HashMap<String, MethodSignature> methods;
 
     /**
      * Constructs a SymbolTable with an initial global scope.
      */
     public SymbolTable() {
-        this.scopes = new ArrayList<>();
-        scopes.add(new HashMap<>()); // Add global scope
+        frames[0] = new Variable[INITIAL_FRAME_SIZE];
         this.methods = new HashMap<>();
     }
 
+    /**
+     * Constructs a SymbolTable with a copy of the global scope of another table and the same methods,
+     * so method bodies can be checked on another thread. The other table must not change meanwhile.
+     *
+     * @param other The table to copy, at its global scope.
+     */
+    public SymbolTable(SymbolTable other) {
+        this();
+        for (int i = 0; i < other.frameSizes[0]; i++) {
+            Variable var = other.frames[0][i];
+            declare(0, var.name, var.type, other.isInitialized(var), var.isFinal, var.isUninitializedGlobal);
+        }
+        this.methods = other.methods;
+    }
+
+    /**
+     * Empties the table so it can validate another source, as if it were new. The arrays of the table and
+     * the ids of the names seen so far are kept, so a table reused over many sources stops allocating once it
+     * has seen their names and nesting depth.
+     */
+    public void clear() {
+        while (depth >= 0) {
+            popFrame();
+        }
+        depth = 0;
+        generation = 0;
+        // Tables copied for method threads may still hold the old map
+        methods = new HashMap<>();
+    }
+
     /**
      * Adds a global variable to the symbol table.
      *
@@ -74,8 +175,8 @@ public class SymbolTable {
      * @param isInitialized Whether the variable is initialized.
      * @param isFinal Whether the variable is final.
      */
-    public void addGlobalVariable(String name, String type, boolean isInitialized, boolean isFinal) {
-        scopes.get(0).put(name, new Variable(name, type, isInitialized, isFinal, true));
+    public void addGlobalVariable(String name, SType type, boolean isInitialized, boolean isFinal) {
+        declare(0, name, type, isInitialized, isFinal, true);
     }
 
     /**
@@ -86,8 +187,8 @@ public class SymbolTable {
      * @param isFinal Whether the variable is final.
      * @param isInitialized Whether the variable is initialized.
      */
-    public void addLocalVariable(String name, String type, boolean isFinal, boolean isInitialized) {
-        scopes.get(scopes.size() - 1).put(name, new Variable(name, type, isInitialized, isFinal, true));
+    public void addLocalVariable(String name, SType type, boolean isFinal, boolean isInitialized) {
+        declare(depth, name, type, isInitialized, isFinal, true);
     }
 
     /**
@@ -99,24 +200,21 @@ public class SymbolTable {
      */
     public void initializeVariable(int scope, String name) throws ValidationException {
         final String NOT_EXISTING_NAME = "Variable <> does not exist";
-        final String PLACEHOLDER = "<>";
-        if (variableExists(scope, name)) {
-            scopes.get(scope).get(name).isInitialized = true;
-            if (getScope() == 0) {
-                scopes.get(scope).get(name).isUninitializedGlobal = false;
-            }
-        } else {
-            throw new ValidationException(NOT_EXISTING_NAME.replace(PLACEHOLDER, name));
+        Variable var = lookup(scope, name);
+        if (var == null) {
+            throw new ValidationException(ErrorCode.UNDEFINED_VARIABLE, NOT_EXISTING_NAME, name);
+        }
+        setInitialized(var, true);
+        if (getScope() == 0) {
+            var.isUninitializedGlobal = false;
         }
     }
 
     /**
-     * Resets the global variables to their initialization state.
+     * Resets the global variables to their initialization state, in constant time.
      */
     public void resetGlobalsToGlobalInitializationState() {
-        for (Variable var : scopes.get(0).values()) {
-            var.isInitialized = !var.isUninitializedGlobal;
-        }
+        generation++;
     }
 
     /**
@@ -126,12 +224,28 @@ public class SymbolTable {
      * @return The scope index, or -1 if not found.
      */
     public int findVariableScope(String name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (variableExists(i, name)) {
-                return i;
-            }
+        lookups.increment();
+        int id = idOf(name, 0, name.length(), name.hashCode());
+        if (id == NOT_FOUND || visible[id] == null) return NOT_FOUND;
+        return visible[id].scope;
+    }
+
+    /**
+     * Finds the innermost variable whose name is a part of a line, without copying the name out of the line.
+     *
+     * @param text The text holding the name.
+     * @param start The index of the first character of the name.
+     * @param end The index after the last character of the name.
+     * @return The variable, or null if no variable with that name is visible.
+     */
+    Variable findVariable(CharSequence text, int start, int end) {
+        lookups.increment();
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = HASH_MULTIPLIER * hash + text.charAt(i);
         }
-        return -1;
+        int id = idOf(text, start, end, hash);
+        return id == NOT_FOUND ? null : visible[id];
     }
 
     /**
@@ -142,7 +256,7 @@ public class SymbolTable {
      * @return True if the variable exists, false otherwise.
      */
     public boolean variableExists(int scope, String name) {
-        return scopes.get(scope).containsKey(name);
+        return lookup(scope, name) != null;
     }
 
     /**
@@ -152,8 +266,8 @@ public class SymbolTable {
      * @param name  The name of the variable.
      * @return The type of the variable.
      */
-    public String getVariableType(int scope, String name) {
-        return scopes.get(scope).get(name).type;
+    public SType getVariableType(int scope, String name) {
+        return lookup(scope, name).type;
     }
 
     /**
@@ -164,7 +278,7 @@ public class SymbolTable {
      * @return True if the variable is initialized, false otherwise.
      */
     public boolean isVariableInitialized(int scope, String name) {
-        return scopes.get(scope).get(name).isInitialized;
+        return isInitialized(lookup(scope, name));
     }
 
     /**
@@ -175,17 +289,17 @@ public class SymbolTable {
      * @return True if the variable is final, false otherwise.
      */
     public boolean isVariableFinal(int scope, String name) {
-        return scopes.get(scope).get(name).isFinal;
+        return lookup(scope, name).isFinal;
     }
 
     /**
      * Adds a method to the symbol table.
      *
-     * @param name       The name of the method.
-     * @param parameters The parameters of the method, represented as a list of string arrays.
+     * @param name      The name of the method.
+     * @param signature The parameters of the method.
      */
-    public void addMethod(String name, ArrayList<String[]> parameters) {
-        methods.put(name, parameters);
+    public void addMethod(String name, MethodSignature signature) {
+        methods.put(name, signature);
         enterScope();
     }
 
@@ -195,17 +309,10 @@ public class SymbolTable {
      * @param name The name of the method whose parameters are to be added.
      */
     public void addMethodParams(String name) {
-        final int FIRST_PARAM = 0, SECOND_PARAM = 1;
         enterScope();
-        ArrayList<String[]> parameters = methods.get(name);
-        for (String[] parameter : parameters) {
-            boolean isFinal = false;
-            if (parameter[FIRST_PARAM].startsWith(RegexUtils.FINAL)) {
-                isFinal = true;
-                parameter[FIRST_PARAM] = parameter[FIRST_PARAM].substring(RegexUtils.FINAL.length()).trim();
-            }
-            scopes.get(scopes.size() - 1).put(parameter[SECOND_PARAM], new Variable(parameter[SECOND_PARAM],
-                    parameter[FIRST_PARAM], true, isFinal, true));
+        MethodSignature signature = methods.get(name);
+        for (int i = 0; i < signature.arity(); i++) {
+            declare(depth, signature.getName(i), signature.getType(i), true, signature.isFinal(i), true);
         }
     }
 
@@ -220,35 +327,55 @@ public class SymbolTable {
     }
 
     /**
-     * Retrieves the parameters of a method.
+     * Retrieves the signature of a method.
      *
      * @param name The name of the method.
-     * @return A list of parameters represented as string arrays.
+     * @return The signature, or null if the method does not exist.
      */
-    public ArrayList<String[]> getMethodParameters(String name) {
+    public MethodSignature getMethodSignature(String name) {
         return methods.get(name);
     }
 
     /**
-     * Enters a new scope by adding a new map to the scopes list.
+     * Leaves every local scope and resets the globals to their initialization state, as if the current
+     * method had ended. Used to recover after a method body failed validation.
+     */
+    public void exitToGlobalScope() {
+        while (depth > 0) {
+            popFrame();
+        }
+        resetGlobalsToGlobalInitializationState();
+    }
+
+    /**
+     * Enters a new scope, reusing the frame of a previous scope at the same depth if there was one.
      */
     public void enterScope() {
-        scopes.add(new HashMap<>());
+        depth++;
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            frameSizes = Arrays.copyOf(frameSizes, depth * 2);
+        }
+        if (frames[depth] == null) {
+            frames[depth] = new Variable[INITIAL_FRAME_SIZE];
+        }
+        frameSizes[depth] = 0;
+        scopesEntered.increment();
+        depthSum.add(depth);
+        maxDepth.accumulate(depth);
     }
 
     /**
-     * Exits the current scope by removing the last map from the scopes list.
+     * Exits the current scope, making the variables it shadowed visible again.
      *
      * @throws ValidationException If there are mismatched braces (i.e., trying to exit the global scope).
      */
     public void exitScope() throws ValidationException {
         final String MISMATCH_BRACES = "Mismatching opening and closing braces";
-        final int WRONG_SIZE = 1;
-        if (scopes.size() == WRONG_SIZE) {
-            throw new ValidationException(MISMATCH_BRACES);
+        if (depth == 0) {
+            throw new ValidationException(ErrorCode.UNMATCHED_BRACES, MISMATCH_BRACES);
         }
-        scopes.get(scopes.size() - 1).clear();
-        scopes.remove(scopes.size() - 1);
+        popFrame();
     }
 
     /**
@@ -257,6 +384,203 @@ public class SymbolTable {
      * @return The index of the current scope.
      */
     public int getScope() {
-        return scopes.size() - 1;
+        return depth;
+    }
+
+    /**
+     * @return The number of name lookups performed by all tables since startup.
+     */
+    public static long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return The number of scopes entered in all tables since startup.
+     */
+    public static long getScopeCount() {
+        return scopesEntered.sum();
+    }
+
+    /**
+     * @return The sum of the depths of all scopes entered since startup, where the global scope is 0.
+     */
+    public static long getDepthSum() {
+        return depthSum.sum();
+    }
+
+    /**
+     * @return The deepest scope entered in any table since startup.
+     */
+    public static long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * Removes the current scope and its variables.
+     */
+    private void popFrame() {
+        Variable[] frame = frames[depth];
+        for (int i = frameSizes[depth] - 1; i >= 0; i--) {
+            visible[frame[i].id] = frame[i].shadowed;
+            frame[i] = null;
+        }
+        frameSizes[depth] = 0;
+        depth--;
+    }
+
+    /**
+     * Reads the initialization state of a variable. A global whose state was set before the last reset
+     * is initialized if it was initialized in the global scope.
+     *
+     * @param var The variable.
+     * @return True if the variable is initialized, false otherwise.
+     */
+    boolean isInitialized(Variable var) {
+        if (var.scope == 0 && var.generation != generation) {
+            return !var.isUninitializedGlobal;
+        }
+        return var.isInitialized;
+    }
+
+    /**
+     * Sets the initialization state of a variable for the current generation.
+     *
+     * @param var The variable.
+     * @param isInitialized Whether the variable is initialized.
+     */
+    private void setInitialized(Variable var, boolean isInitialized) {
+        var.isInitialized = isInitialized;
+        var.generation = generation;
+    }
+
+    /**
+     * Finds the variable with a given name declared in a given scope.
+     *
+     * @param scope The scope index.
+     * @param name The name of the variable.
+     * @return The variable, or null if the scope does not declare it.
+     */
+    private Variable lookup(int scope, String name) {
+        lookups.increment();
+        int id = idOf(name, 0, name.length(), name.hashCode());
+        if (id == NOT_FOUND) return null;
+        Variable var = visible[id];
+        while (var != null && var.scope > scope) {
+            var = var.shadowed;
+        }
+        return (var != null && var.scope == scope) ? var : null;
+    }
+
+    /**
+     * Declares a variable in a scope, replacing a variable with the same name already declared there.
+     *
+     * @param scope The scope to declare the variable in; either the current or the global scope.
+     * @param name The name of the variable.
+     * @param type The data type of the variable.
+     * @param isInitialized Whether the variable is initialized.
+     * @param isFinal Whether the variable is final.
+     * @param isUninitializedGlobal Whether the variable is an uninitialized global.
+     */
+    private void declare(int scope, String name, SType type, boolean isInitialized, boolean isFinal,
+                         boolean isUninitializedGlobal) {
+        int id = idOf(name, 0, name.length(), name.hashCode());
+        if (id == NOT_FOUND) id = newId(name);
+        Variable declared = new Variable(name, id, scope, type, isInitialized, isFinal, isUninitializedGlobal);
+        declared.generation = generation;
+
+        // Find where the scope goes in the chain of variables with this name, from inner to outer scopes
+        Variable inner = null, var = visible[id];
+        while (var != null && var.scope > scope) {
+            inner = var;
+            var = var.shadowed;
+        }
+        Variable[] frame = frames[scope];
+        if (var != null && var.scope == scope) {
+            declared.shadowed = var.shadowed;
+            for (int i = 0; i < frameSizes[scope]; i++) {
+                if (frame[i] == var) frame[i] = declared;
+            }
+        } else {
+            declared.shadowed = var;
+            if (frameSizes[scope] == frame.length) {
+                frame = frames[scope] = Arrays.copyOf(frame, frame.length * 2);
+            }
+            frame[frameSizes[scope]++] = declared;
+        }
+        if (inner == null) {
+            visible[id] = declared;
+        } else {
+            inner.shadowed = declared;
+        }
+    }
+
+    /**
+     * Finds the id of a name.
+     *
+     * @param text The text holding the name.
+     * @param start The index of the first character of the name.
+     * @param end The index after the last character of the name.
+     * @param hash The hash of the name, as String.hashCode computes it.
+     * @return The id, or NOT_FOUND if the name has none.
+     */
+    private int idOf(CharSequence text, int start, int end, int hash) {
+        int mask = idSlots.length - 1;
+        for (int slot = spread(hash) & mask; idSlots[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+            String name = names[idSlots[slot] - 1];
+            if (name.hashCode() == hash && name.length() == end - start && sameChars(name, text, start)) {
+                return idSlots[slot] - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gives the next id to a name that has none, growing the tables indexed by id when needed.
+     *
+     * @param name The name.
+     * @return The new id.
+     */
+    private int newId(String name) {
+        int id = idCount++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            visible = Arrays.copyOf(visible, id * 2);
+        }
+        names[id] = name;
+        // Keep the id table at most half full, so probe sequences stay short
+        if (idCount * 2 > idSlots.length) {
+            idSlots = new int[idSlots.length * 2];
+            for (int i = 0; i < idCount; i++) insertId(i);
+        } else {
+            insertId(id);
+        }
+        return id;
+    }
+
+    /**
+     * Puts an id in the first free slot of its probe sequence.
+     */
+    private void insertId(int id) {
+        int mask = idSlots.length - 1;
+        int slot = spread(names[id].hashCode()) & mask;
+        while (idSlots[slot] != EMPTY_SLOT) slot = (slot + 1) & mask;
+        idSlots[slot] = id + 1;
+    }
+
+    /**
+     * Mixes the high bits of a hash into the low bits, which pick the slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return True if the text holds the characters of the name from the given index.
+     */
+    private static boolean sameChars(String name, CharSequence text, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) return false;
+        }
+        return true;
     }
 }
@@ -1,7 +1,9 @@
 package ex5.validation;
 
+import ex5.exceptions.ErrorCode;
 import ex5.exceptions.ValidationException;
-import ex5.parsing.RegexUtils;
+import ex5.parsing.LineClassifier;
+import ex5.parsing.LineKind;
 
 /**
  * Factory class for creating and managing different types of validators.
@@ -34,9 +36,19 @@ public class ValidatorFactory {
      * @param symbolTable The symbol table used for managing variable and method scopes.
      */
     public ValidatorFactory(SymbolTable symbolTable) {
+        this(symbolTable, null);
+    }
+
+    /**
+     * Constructor for a ValidatorFactory whose method calls may come before the methods they call are declared.
+     *
+     * @param symbolTable The symbol table used for managing variable and method scopes.
+     * @param pendingCalls Where calls to methods not declared yet are recorded, or null to reject them.
+     */
+    public ValidatorFactory(SymbolTable symbolTable, PendingCalls pendingCalls) {
         this.symbolTable = symbolTable;
         conditionValidator = new ConditionValidator(symbolTable);
-        methodValidator = new MethodValidator(symbolTable);
+        methodValidator = new MethodValidator(symbolTable, pendingCalls);
         variableValidator = new VariableValidator(symbolTable);
     }
 
@@ -48,58 +60,114 @@ public class ValidatorFactory {
      * @throws ValidationException If the line is invalid or violates certain rules.
      */
     public Validator getValidator(String line) throws ValidationException {
-        final String DECLARE_IN_METHOD = "Cannot declare method inside method";
-        final String INVALID_LINE = "Invalid line in global scope: " + line;
         line = line.trim();
+        return getValidator(line, LineClassifier.classify(line));
+    }
+
+    /**
+     * Returns the appropriate validator for a given line of code whose bucket is already known.
+     *
+     * @param line The trimmed line of code to be validated.
+     * @param kind The bucket of the line, as returned by {@link LineClassifier#classify(CharSequence)}.
+     * @return The appropriate Validator instance, or null if no validation is needed.
+     * @throws ValidationException If the line is invalid or violates certain rules.
+     */
+    public Validator getValidator(String line, LineKind kind) throws ValidationException {
+        final String DECLARE_IN_METHOD = "Cannot declare method inside method";
+        final String INVALID_LINE = "Invalid line in global scope: <>";
         Validator returnValue = null;
 
-        if (RegexUtils.matches(line, RegexUtils.RETURN_STATEMENT)) {
+        if (kind == LineKind.RETURN) {
             // Handle return statement validation
             wasPreviousLineReturn = true;
             returnValue = methodValidator;
         } else {
-            if (RegexUtils.matches(line, RegexUtils.CLOSING_SCOPE)) {
-                // Handle scope closure
-                symbolTable.exitScope();
-                if (wasPreviousLineReturn) {
-                    isInMethodBody = false;
-                    symbolTable.resetGlobalsToGlobalInitializationState();
-                }
-                returnValue = null;
-            } else if (RegexUtils.matches(line, RegexUtils.VARIABLE_DECLARATION)) {
-                // Handle variable declarations (only allowed within a non-global scope)
-                if (symbolTable.getScope() == 0) {
-                    return null;
-                }
-                returnValue = variableValidator;
-            } else if (RegexUtils.matches(line, RegexUtils.METHOD_DECLARATION_ONLY)) {
-                // Handle method declarations
-                if (isInMethodBody) {
-                    throw new ValidationException(DECLARE_IN_METHOD);
-                }
-                isInMethodBody = true;
-                if (symbolTable.getScope() == 1) {
-                    return null;
-                }
-                returnValue = methodValidator;
-            } else if (RegexUtils.matches(line, RegexUtils.IF_WHILE_BLOCK)) {
-                // Handle condition blocks (if/while)
-                returnValue = conditionValidator;
-            } else if (RegexUtils.matches(line, RegexUtils.VARIABLE_VALUE_CHANGE)) {
-                // Handle variable value modifications
-                returnValue = variableValidator;
-            } else if (RegexUtils.matches(line, RegexUtils.METHOD_CALL_ONLY)) {
-                // Handle method calls
-                returnValue = methodValidator;
-            } else {
-                // Invalid line in the global scope
-                throw new ValidationException(INVALID_LINE);
+            switch (kind) {
+                case CLOSING_SCOPE:
+                    // Handle scope closure
+                    symbolTable.exitScope();
+                    if (wasPreviousLineReturn) {
+                        isInMethodBody = false;
+                        symbolTable.resetGlobalsToGlobalInitializationState();
+                    }
+                    returnValue = null;
+                    break;
+                case VARIABLE_DECLARATION:
+                    // Handle variable declarations (only allowed within a non-global scope)
+                    if (symbolTable.getScope() == 0) {
+                        return null;
+                    }
+                    returnValue = variableValidator;
+                    break;
+                case METHOD_DECLARATION:
+                    // Handle method declarations
+                    if (isInMethodBody) {
+                        throw new ValidationException(ErrorCode.NESTED_METHOD, DECLARE_IN_METHOD);
+                    }
+                    isInMethodBody = true;
+                    if (symbolTable.getScope() == 1) {
+                        return null;
+                    }
+                    returnValue = methodValidator;
+                    break;
+                case IF_WHILE_BLOCK:
+                    // Handle condition blocks (if/while)
+                    returnValue = conditionValidator;
+                    break;
+                case VARIABLE_VALUE_CHANGE:
+                    // Handle variable value modifications
+                    returnValue = variableValidator;
+                    break;
+                case METHOD_CALL:
+                    // Handle method calls
+                    returnValue = methodValidator;
+                    break;
+                default:
+                    // Invalid line in the global scope
+                    throw new ValidationException(ErrorCode.INVALID_GLOBAL_LINE, INVALID_LINE, line);
             }
             wasPreviousLineReturn = false;
         }
         return returnValue;
     }
 
+    /**
+     * Returns the appropriate validator for validating a file in a single pass, where each line is checked
+     * once: global lines as the sweep phase checks them, and method bodies as {@link #getValidator} does.
+     * A method declaration is registered as the sweep phase registers it, and its body is then entered.
+     * The global scope must not hold if/while blocks, which the two phases check differently.
+     *
+     * @param line The trimmed line of code to be validated.
+     * @param kind The bucket of the line, as returned by {@link LineClassifier#classify(CharSequence)}.
+     * @return The appropriate Validator instance, or null if no validation is needed.
+     * @throws ValidationException If the line is invalid or violates certain rules.
+     */
+    public Validator getValidatorInOnePass(String line, LineKind kind) throws ValidationException {
+        final String INVALID_LINE = "Invalid line in global scope: <>";
+
+        if (symbolTable.getScope() != 0) {
+            return getValidator(line, kind);
+        }
+        switch (kind) {
+            case VARIABLE_DECLARATION:
+            case VARIABLE_VALUE_CHANGE:
+                // Globals are declared and assigned in order
+                return variableValidator;
+            case METHOD_DECLARATION:
+                if (!isInMethodBody) {
+                    // Register the method, then leave its scope so the body is entered with its parameters
+                    methodValidator.validateMethodDeclarationForSweep(line);
+                    symbolTable.exitScope();
+                }
+                return getValidator(line, kind);
+            case CLOSING_SCOPE:
+                return getValidator(line, kind);
+            default:
+                // Invalid line in the global scope
+                throw new ValidationException(ErrorCode.INVALID_GLOBAL_LINE, INVALID_LINE, line);
+        }
+    }
+
     /**
      * Returns the appropriate validator for the sweep phase of code analysis.
      *
@@ -108,15 +176,27 @@ public class ValidatorFactory {
      * @throws ValidationException If the line is invalid or violates certain rules.
      */
     public Validator getValidatorForSweep(String line) throws ValidationException {
-        final String INVALID_LINE = "Invalid line in global scope: " + line;
+        return getValidatorForSweep(line, LineClassifier.classify(line));
+    }
 
-        if (RegexUtils.matches(line, RegexUtils.IF_WHILE_BLOCK)) {
+    /**
+     * Returns the appropriate validator for the sweep phase, for a line whose bucket is already known.
+     *
+     * @param line The trimmed line of code to be validated during the sweep phase.
+     * @param kind The bucket of the line, as returned by {@link LineClassifier#classify(CharSequence)}.
+     * @return The appropriate Validator instance, or null if no validation is needed.
+     * @throws ValidationException If the line is invalid or violates certain rules.
+     */
+    public Validator getValidatorForSweep(String line, LineKind kind) throws ValidationException {
+        final String INVALID_LINE = "Invalid line in global scope: <>";
+
+        if (kind == LineKind.IF_WHILE_BLOCK) {
             // Enter a new scope for condition blocks
             symbolTable.enterScope();
             return null;
         }
 
-        if (RegexUtils.matches(line, RegexUtils.CLOSING_SCOPE)) {
+        if (kind == LineKind.CLOSING_SCOPE) {
             // Exit the current scope
             symbolTable.exitScope();
             if (symbolTable.getScope() == 0) {
@@ -130,20 +210,27 @@ public class ValidatorFactory {
             return null;
         }
 
-        if (RegexUtils.matches(line, RegexUtils.VARIABLE_DECLARATION)) {
-            // Handle variable declarations
-            return variableValidator;
-        } else if (RegexUtils.matches(line, RegexUtils.METHOD_DECLARATION_ONLY)) {
-            // Validate method declarations during the sweep phase
-            methodValidator.validateMethodDeclarationForSweep(line);
-            isInMethodBody = true;
-            return null;
-        } else if (RegexUtils.matches(line, RegexUtils.VARIABLE_VALUE_CHANGE)) {
-            // Handle variable value modifications
-            return variableValidator;
-        } else {
-            // Invalid line in the global scope
-            throw new ValidationException(INVALID_LINE);
+        switch (kind) {
+            case VARIABLE_DECLARATION:
+                // Handle variable declarations
+                return variableValidator;
+            case METHOD_DECLARATION:
+                // Validate method declarations during the sweep phase
+                int scope = symbolTable.getScope();
+                try {
+                    methodValidator.validateMethodDeclarationForSweep(line);
+                } finally {
+                    // Enter the method even if its declaration is invalid, so sweeping can go on after it
+                    isInMethodBody = true;
+                    if (symbolTable.getScope() == scope) symbolTable.enterScope();
+                }
+                return null;
+            case VARIABLE_VALUE_CHANGE:
+                // Handle variable value modifications
+                return variableValidator;
+            default:
+                // Invalid line in the global scope
+                throw new ValidationException(ErrorCode.INVALID_GLOBAL_LINE, INVALID_LINE, line);
         }
     }
 }
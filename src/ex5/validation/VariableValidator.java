@@ -1,7 +1,10 @@
 package ex5.validation;
 
+import ex5.exceptions.ErrorCode;
 import ex5.exceptions.ValidationException;
+import ex5.parsing.LiteralClassifier;
 import ex5.parsing.RegexUtils;
+import ex5.parsing.SType;
 
 /**
  * The VariableValidator class is responsible for validating variable declarations,
@@ -40,24 +43,24 @@ public class VariableValidator implements Validator {
     public void validate(String line) throws ValidationException {
         // Constants used for splitting and error messages
         final int SPLITTING_LIMIT = 2;
-        final int VALUE_INDEX = 1, NAME_INDEX = 0;
+        final int VALUE_INDEX = 1, NAME_INDEX = 0, TYPE_INDEX = 0, DECLARED_NAMES_INDEX = 1;
         final String VAR_NOT_INITIALIZED = "Cannot assign value from null variable '<>'.",
                 FINAL_VAR_NULL = "Final variable '<>' cannot be null",
-                INVALID_ASSIGNMENT_LINE = "Invalid assignment syntax: " + line,
-                INVALID_VAR_LINE = "Invalid variable syntax: " + line;
-        final String PLACEHOLDER = "<>";
+                INVALID_ASSIGNMENT_LINE = "Invalid assignment syntax: <>",
+                INVALID_VAR_LINE = "Invalid variable syntax: <>";
 
         // Validate variable declaration
-        if (line.matches(RegexUtils.VARIABLE_DECLARATION)) {
+        if (RegexUtils.matches(line, RegexUtils.VARIABLE_DECLARATION)) {
             boolean isFinal = line.startsWith(RegexUtils.FINAL);
             if (isFinal) {
                 line = line.substring(RegexUtils.FINAL.length()).trim();
             }
-            String[] typeAndNames = line.split(RegexUtils.SPACES, SPLITTING_LIMIT);
-            String[] names = typeAndNames[NAME_INDEX].split(VAR_DELIMITER);
+            String[] typeAndNames = RegexUtils.split(line, RegexUtils.SPACES, SPLITTING_LIMIT);
+            String[] names = typeAndNames[DECLARED_NAMES_INDEX].split(VAR_DELIMITER);
             names[names.length - 1] = names[names.length - 1].replace(END_LINE, EMPTY_STRING);
 
             for (String name : names) {
+                name = name.trim();
                 String value = null;
                 if (name.contains(DEFINING_VALUE_CHAR)) {
                     value = name.split(DEFINING_VALUE_CHAR, SPLITTING_LIMIT)[VALUE_INDEX].trim();
@@ -67,12 +70,12 @@ public class VariableValidator implements Validator {
                     int valueScope = symbolTable.findVariableScope(value);
                     if ((valueScope >= 0 && !symbolTable.isVariableInitialized(valueScope, value)) ||
                             (value.equals(name) && valueScope == -1)) {
-                        throw new ValidationException(VAR_NOT_INITIALIZED.replace(PLACEHOLDER, name));
+                        throw new ValidationException(ErrorCode.UNINITIALIZED_VARIABLE, VAR_NOT_INITIALIZED, name);
                     }
                 }
-                validateDeclaration(name, typeAndNames[0], isFinal, value != null);
+                validateDeclaration(name, typeAndNames[TYPE_INDEX], isFinal, value != null);
                 if (value == null && isFinal) {
-                    throw new ValidationException(FINAL_VAR_NULL.replace(PLACEHOLDER, name));
+                    throw new ValidationException(ErrorCode.FINAL_WITHOUT_VALUE, FINAL_VAR_NULL, name);
                 }
                 if (value != null) {
                     validateAssignment(name, value, true);
@@ -80,19 +83,19 @@ public class VariableValidator implements Validator {
             }
         }
         // Validate variable assignment
-        else if (line.matches(RegexUtils.VARIABLE_VALUE_CHANGE)) {
+        else if (RegexUtils.matches(line, RegexUtils.VARIABLE_VALUE_CHANGE)) {
             String[] variables = line.split(VAR_DELIMITER);
             variables[variables.length - 1] = variables[variables.length - 1]
                     .replace(END_LINE, EMPTY_STRING);
             for (String variable : variables) {
                 String[] tokens = variable.split(DEFINING_VALUE_CHAR, SPLITTING_LIMIT);
                 if (tokens.length != 2) {
-                    throw new ValidationException(INVALID_ASSIGNMENT_LINE);
+                    throw new ValidationException(ErrorCode.INVALID_ASSIGNMENT, INVALID_ASSIGNMENT_LINE, line);
                 }
                 validateAssignment(tokens[0].trim(), tokens[1].trim(), false);
             }
         } else {
-            throw new ValidationException(INVALID_VAR_LINE);
+            throw new ValidationException(ErrorCode.INVALID_VARIABLE_LINE, INVALID_VAR_LINE, line);
         }
     }
 
@@ -107,24 +110,25 @@ public class VariableValidator implements Validator {
      */
     private void validateDeclaration(String name, String type, boolean isFinal, boolean isInitialized)
             throws ValidationException {
-        final String ILLEGAL_VAR_NAME = "Variable '" + name + "' cannot have '__' in it or be only '_'";
-        final String ALREADY_DECLARED = "Variable '" + name + "' already declared in the current scope.";
-        final String INVALID_TYPE = "Invalid type '" + type + "' for variable '" + name + "'.";
+        final String ILLEGAL_VAR_NAME = "Variable '<>' cannot have '__' in it or be only '_'";
+        final String ALREADY_DECLARED = "Variable '<>' already declared in the current scope.";
+        final String INVALID_TYPE = "Invalid type '<>' for variable '<>'.";
 
-        if (name.matches(RegexUtils.ILLEGAL_VARIABLE_NAME)) {
-            throw new ValidationException(ILLEGAL_VAR_NAME);
+        if (RegexUtils.matches(name, RegexUtils.ILLEGAL_VARIABLE_NAME)) {
+            throw new ValidationException(ErrorCode.ILLEGAL_VARIABLE_NAME, ILLEGAL_VAR_NAME, name);
         }
         if (symbolTable.variableExists(symbolTable.getScope(), name)) {
-            throw new ValidationException(ALREADY_DECLARED);
+            throw new ValidationException(ErrorCode.VARIABLE_ALREADY_DECLARED, ALREADY_DECLARED, name);
         }
-        if (!isValidType(type)) {
-            throw new ValidationException(INVALID_TYPE);
+        SType variableType = SType.fromKeyword(type);
+        if (variableType == null) {
+            throw new ValidationException(ErrorCode.INVALID_VARIABLE_TYPE, INVALID_TYPE, type, name);
         }
 
         if (symbolTable.getScope() == 0) {
-            symbolTable.addGlobalVariable(name, type, isInitialized, isFinal);
+            symbolTable.addGlobalVariable(name, variableType, isInitialized, isFinal);
         } else {
-            symbolTable.addLocalVariable(name, type, isInitialized, isFinal);
+            symbolTable.addLocalVariable(name, variableType, isFinal, isInitialized);
         }
     }
 
@@ -138,22 +142,22 @@ public class VariableValidator implements Validator {
      */
     private void validateAssignment(String name, String value, boolean isDeclaration)
             throws ValidationException {
-        final String VAR_NOT_EXIST = "Variable '" + name + "' does not exist in the current or parent scopes.";
-        final String FINAL_VAR_ASSIGNMENT = "Cannot assign to final variable '" + name + "'.";
-        final String MISMATCH_TYPES = "Type mismatch: Cannot assign value '" + value +
-                "' to variable '" + name + "' of type '<>' or variable is uninitialized.";
+        final String VAR_NOT_EXIST = "Variable '<>' does not exist in the current or parent scopes.";
+        final String FINAL_VAR_ASSIGNMENT = "Cannot assign to final variable '<>'.";
+        final String MISMATCH_TYPES =
+                "Type mismatch: Cannot assign value '<>' to variable '<>' of type '<>' or variable is uninitialized.";
 
         int scope = symbolTable.findVariableScope(name);
         if (scope == -1) {
-            throw new ValidationException(VAR_NOT_EXIST);
+            throw new ValidationException(ErrorCode.UNDEFINED_VARIABLE, VAR_NOT_EXIST, name);
         }
         if (!isDeclaration && symbolTable.isVariableFinal(scope, name)) {
-            throw new ValidationException(FINAL_VAR_ASSIGNMENT);
+            throw new ValidationException(ErrorCode.FINAL_ASSIGNMENT, FINAL_VAR_ASSIGNMENT, name);
         }
 
-        String variableType = symbolTable.getVariableType(scope, name);
+        SType variableType = symbolTable.getVariableType(scope, name);
         if (!isTypeCompatible(variableType, value)) {
-            throw new ValidationException(MISMATCH_TYPES.replace("<>", variableType));
+            throw new ValidationException(ErrorCode.TYPE_MISMATCH, MISMATCH_TYPES, value, name, variableType);
         }
         symbolTable.initializeVariable(scope, name);
     }
@@ -165,39 +169,12 @@ public class VariableValidator implements Validator {
      * @param value        The value to check.
      * @return True if compatible, false otherwise.
      */
-    private boolean isTypeCompatible(String variableType, String value) {
-        if (symbolTable.findVariableScope(value) != -1) {
-            return variableType.equals(
-                    symbolTable.getVariableType(symbolTable.findVariableScope(value), value)
-            ) && symbolTable.isVariableInitialized(symbolTable.findVariableScope(value), value);
+    private boolean isTypeCompatible(SType variableType, String value) {
+        int valueScope = symbolTable.findVariableScope(value);
+        if (valueScope != ERROR_VALUE) {
+            return variableType.accepts(symbolTable.getVariableType(valueScope, value)) &&
+                    symbolTable.isVariableInitialized(valueScope, value);
         }
-        value = value.trim();
-
-        switch (variableType) {
-            case RegexUtils.INTEGER:
-                return value.matches(RegexUtils.INTEGER_ONLY);
-            case RegexUtils.DOUBLE:
-                return value.matches(RegexUtils.DOUBLE_ONLY);
-            case RegexUtils.BOOLEAN:
-                return value.matches(RegexUtils.BOOLEAN_ONLY) || value.matches(RegexUtils.DOUBLE_ONLY);
-            case RegexUtils.CHAR:
-                return value.matches(RegexUtils.CHAR_ONLY);
-            case RegexUtils.STRING:
-                return value.matches(RegexUtils.STRING_ONLY);
-            default:
-                return false;
-        }
-    }
-
-    /**
-     * Checks if a given type is valid.
-     *
-     * @param type The type to check.
-     * @return True if the type is valid, false otherwise.
-     */
-    private boolean isValidType(String type) {
-        return type.equals(RegexUtils.INTEGER) || type.equals(RegexUtils.DOUBLE) ||
-                type.equals(RegexUtils.BOOLEAN) || type.equals(RegexUtils.CHAR) ||
-                type.equals(RegexUtils.STRING);
+        return LiteralClassifier.isAcceptedBy(variableType, LiteralClassifier.classify(value.trim()));
     }
 }